@@ -32,6 +32,9 @@ package icircles.abstractDescription;
 
 import icircles.util.DEB;
 
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.TreeSet;
@@ -55,27 +58,184 @@ import java.util.TreeSet;
 public class AbstractBasicRegion implements Comparable<AbstractBasicRegion> {
 
     TreeSet<AbstractCurve> m_in_set;
-    static TreeSet<AbstractBasicRegion> m_library = new TreeSet<AbstractBasicRegion>();
+    // The same contours as m_in_set, as a bit for each AbstractCurve id.
+    // Ids are unique among the curves of a LayoutContext (until it is
+    // reset), so set operations on regions can work on the bits.
+    private final Bits m_bits;
+    private final int m_hash;
+    // The labels of m_in_set, compared by identity as in
+    // AbstractCurve.matches_label.  Made with the region, as regions are
+    // shared between threads.
+    private final Set<CurveLabel> m_labels;
+    // Each region is made once for its set of contours, and looked up
+    // in the context's library by the bits for that set (a region's
+    // m_in_set is never changed).  The library only holds regions
+    // weakly, keyed by m_bits.
+    private final LayoutContext m_context;
 
-    private AbstractBasicRegion(TreeSet<AbstractCurve> in_set) {
+    /**
+     * The ids of a set of curves.  The bits are counted from the lowest id
+     * in the set, so that they stay short however high the ids of a
+     * long-lived LayoutContext go.
+     */
+    static final class Bits {
+        private final int low; // the lowest id, or 0 for no ids
+        private final BitSet set; // id - low for each id, so bit 0 is set
+
+        private Bits(int low, BitSet set) {
+            this.low = low;
+            this.set = set;
+        }
+
+        static Bits of(Set<AbstractCurve> curves) {
+            int low = Integer.MAX_VALUE;
+            for (AbstractCurve ac : curves) {
+                low = Math.min(low, ac.m_id);
+            }
+            BitSet set = new BitSet();
+            for (AbstractCurve ac : curves) {
+                set.set(ac.m_id - low);
+            }
+            return new Bits(set.isEmpty() ? 0 : low, set);
+        }
+
+        boolean has(int id) {
+            return id >= low && set.get(id - low);
+        }
+
+        Bits with(int id) {
+            if (set.isEmpty()) {
+                BitSet result = new BitSet();
+                result.set(0);
+                return new Bits(id, result);
+            } else if (id >= low) {
+                BitSet result = (BitSet) set.clone();
+                result.set(id - low);
+                return new Bits(low, result);
+            }
+            BitSet result = shifted(low - id);
+            result.set(0);
+            return new Bits(id, result);
+        }
+
+        Bits without(int id) {
+            BitSet result = (BitSet) set.clone();
+            result.clear(id - low);
+            int first = result.nextSetBit(0);
+            if (first < 0) {
+                return new Bits(0, result);
+            } else if (first == 0) {
+                return new Bits(low, result);
+            }
+            return new Bits(low + first, result.get(first, result.length()));
+        }
+
+        /**
+         * The bits moved up by delta.
+         */
+        private BitSet shifted(int delta) {
+            BitSet result = new BitSet();
+            for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+                result.set(i + delta);
+            }
+            return result;
+        }
+
+        /**
+         * The ids in just one of this and other, as bits counted from
+         * the lower of the two lowest ids.
+         */
+        private BitSet difference(Bits other) {
+            BitSet result;
+            if (other.low == low || other.set.isEmpty()) {
+                result = (BitSet) set.clone();
+                result.xor(other.set);
+            } else if (set.isEmpty()) {
+                return other.difference(this);
+            } else if (other.low > low) {
+                result = other.shifted(other.low - low);
+                result.xor(set);
+            } else {
+                result = shifted(low - other.low);
+                result.xor(other.set);
+            }
+            return result;
+        }
+
+        /**
+         * If this and other differ by a single id, that id; otherwise 0
+         * (which is never an id).
+         */
+        int onlyDifference(Bits other) {
+            BitSet difference = difference(other);
+            if (difference.cardinality() != 1) {
+                return 0;
+            }
+            int base = set.isEmpty() ? other.low
+                    : other.set.isEmpty() ? low : Math.min(low, other.low);
+            return base + difference.nextSetBit(0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Bits)) {
+                return false;
+            }
+            Bits other = (Bits) obj;
+            return low == other.low && set.equals(other.set);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * low + set.hashCode();
+        }
+    }
+
+    private AbstractBasicRegion(LayoutContext context, TreeSet<AbstractCurve> in_set, Bits bits) {
+        m_context = context;
         m_in_set = in_set;
+        m_bits = bits;
+        m_hash = in_set.hashCode();
+        m_labels = Collections.newSetFromMap(new IdentityHashMap<CurveLabel, Boolean>());
+        for (AbstractCurve ac : in_set) {
+            m_labels.add(ac.getLabel());
+        }
     }
 
+    /**
+     * The region inside just the given curves, made in the context of
+     * those curves (or the default context, if there are none).
+     */
     public static AbstractBasicRegion get(Set<AbstractCurve> in_set) {
-        // TODO: This is quite an expensive way to look up already existing
-        // objects. This should definitely be replaced by 'contains'.
-        //
-        // I would suggest not to use the library at all.
-        for (AbstractBasicRegion alreadyThere : m_library) {
-            if (alreadyThere.m_in_set.equals(in_set)) {
-                return alreadyThere;
-            }
+        LayoutContext context = in_set.isEmpty()
+                ? LayoutContext.getDefault()
+                : in_set.iterator().next().getContext();
+        return get(context, in_set);
+    }
+
+    /**
+     * The region inside just the given curves, which must all come from
+     * context.
+     */
+    public static AbstractBasicRegion get(LayoutContext context, Set<AbstractCurve> in_set) {
+        Bits bits = Bits.of(in_set);
+        AbstractBasicRegion alreadyThere = context.getRegion(bits);
+        if (alreadyThere != null) {
+            return alreadyThere;
         }
+        return make(context, new TreeSet<AbstractCurve>(in_set), bits);
+    }
 
-        TreeSet<AbstractCurve> tmp = new TreeSet<AbstractCurve>(in_set);
-        AbstractBasicRegion result = new AbstractBasicRegion(tmp);
-        m_library.add(result);
-        return result;
+    private static AbstractBasicRegion make(LayoutContext context,
+            TreeSet<AbstractCurve> in_set, Bits bits) {
+        return context.addRegion(bits, new AbstractBasicRegion(context, in_set, bits));
+    }
+
+    public LayoutContext getContext() {
+        return m_context;
     }
 
     /**
@@ -91,10 +251,15 @@ public class AbstractBasicRegion implements Comparable<AbstractBasicRegion> {
      * @return an {@link AbstractBasicRegion} which has been moved outside c
      */
     public AbstractBasicRegion moveOutside(AbstractCurve c) {
-        if (m_in_set.contains(c)) {
+        if (m_bits.has(c.m_id)) {
+            Bits bits = m_bits.without(c.m_id);
+            AbstractBasicRegion alreadyThere = m_context.getRegion(bits);
+            if (alreadyThere != null) {
+                return alreadyThere;
+            }
             TreeSet<AbstractCurve> contours = new TreeSet<AbstractCurve>(m_in_set);
             contours.remove(c);
-            return get(contours);
+            return make(m_context, contours, bits);
         } else {
             return this;
         }
@@ -108,10 +273,14 @@ public class AbstractBasicRegion implements Comparable<AbstractBasicRegion> {
      *         the comparison of the interal contour sets otherwise.
      */
     public int compareTo(AbstractBasicRegion other) {
-        if (other.m_in_set.size() < m_in_set.size()) {
+        if (this == other) {
+            return 0;
+        } else if (other.m_in_set.size() < m_in_set.size()) {
             return 1;
         } else if (other.m_in_set.size() > m_in_set.size()) {
             return -1;
+        } else if (m_context == other.m_context && m_bits.equals(other.m_bits)) {
+            return 0;
         }
 
         // same sized in_set
@@ -129,6 +298,30 @@ public class AbstractBasicRegion implements Comparable<AbstractBasicRegion> {
         return 0;
     }
 
+    /**
+     * Two {@link AbstractBasicRegion} objects are equal if they are inside
+     * the same {@link AbstractCurve} objects (consistent with compareTo).
+     * The bits only name curves within one context, so regions from
+     * different contexts are never equal.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof AbstractBasicRegion)) {
+            return false;
+        }
+        AbstractBasicRegion other = (AbstractBasicRegion) obj;
+        return m_hash == other.m_hash && m_context == other.m_context
+                && m_bits.equals(other.m_bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return m_hash;
+    }
+
     public String debug() {
         if (DEB.level == 0) {
             return "";
@@ -199,16 +392,16 @@ public class AbstractBasicRegion implements Comparable<AbstractBasicRegion> {
             return other.getStraddledContour(this);
         } else {
             // we have one more contour than other - are we neighbours?
+            // Only if our bits differ from other's in just one place.
+            int id = m_bits.onlyDifference(other.m_bits);
+            if (id == 0) {
+                return null;
+            }
             AbstractCurve result = null;
-            Iterator<AbstractCurve> it = getContourIterator();
-            while (it.hasNext()) {
-                AbstractCurve ac = it.next();
-                if (!other.is_in(ac)) {
-                    if (result != null) {
-                        return null; // found two contours here absent from other
-                    } else {
-                        result = ac;
-                    }
+            for (AbstractCurve ac : m_in_set) {
+                if (ac.m_id == id) {
+                    result = ac;
+                    break;
                 }
             }
             if (DEB.level > 2) {
@@ -230,13 +423,18 @@ public class AbstractBasicRegion implements Comparable<AbstractBasicRegion> {
      *         that this is inside and also inside the passed AbstractCurve.
      */
     public AbstractBasicRegion moved_in(AbstractCurve newCont) {
+        Bits bits = m_bits.with(newCont.m_id);
+        AbstractBasicRegion alreadyThere = m_context.getRegion(bits);
+        if (alreadyThere != null) {
+            return alreadyThere;
+        }
         TreeSet<AbstractCurve> conts = new TreeSet<AbstractCurve>(m_in_set);
         conts.add(newCont);
-        return AbstractBasicRegion.get(conts);
+        return make(m_context, conts, bits);
     }
 
     public boolean is_in(AbstractCurve c) {
-        return m_in_set.contains(c);
+        return m_bits.has(c.m_id);
     }
 
     public double checksum() {
@@ -250,7 +448,7 @@ public class AbstractBasicRegion implements Comparable<AbstractBasicRegion> {
     }
     
     public static void clearLibrary() {
-        m_library.clear();
+        LayoutContext.getDefault().clearRegions();
     }
 
     /**
@@ -258,34 +456,26 @@ public class AbstractBasicRegion implements Comparable<AbstractBasicRegion> {
      * label equivalence ensures that the labels in this AbstractBasicRegion are
      * exactly those which are contained in the passed in AbstractBasicRegion.
      *
-     * This is necessarily O(n^2) + the complexity to access the internal data
-     * structure, where n is the number of AbsractCurve objects in the region.
+     * Regions with the same contours are label equivalent straight away;
+     * otherwise each label here is looked up in the labels of z, which
+     * are kept with z.  This is O(n), where n is the number of
+     * AbsractCurve objects in the region.
      *
      * @param z The AbstractBasicRegion to compare label equivalence.
      * @return True if the regions are label equivalent, false otherwise.
      */
     public boolean isLabelEquivalent(AbstractBasicRegion z) {
         if (getNumContours() == z.getNumContours()) {
-            if (z.getNumContours() == 0) {
+            if (z.getNumContours() == 0
+                    || (m_context == z.m_context && m_bits.equals(z.m_bits))) {
                 return true;
             } else {
-                //System.out.println(" compare zones "+debug()+" and "+z.debug());
-                Iterator<AbstractCurve> acIt = getContourIterator();
-                AcItLoop:
-                while (acIt.hasNext()) {
-                    AbstractCurve thisAC = acIt.next();
+                Set<CurveLabel> labels = z.m_labels;
+                for (AbstractCurve thisAC : m_in_set) {
                     // look for an AbstractCurve in z with the same label
-                    Iterator<AbstractCurve> acIt2 = z.getContourIterator();
-                    while (acIt2.hasNext()) {
-                        AbstractCurve thatAC = acIt2.next();
-                        //System.out.println(" compare abstract contours "+thisAC.debug()+" and "+thatAC.debug());
-                        if (thisAC.matches_label(thatAC)) {
-                            //System.out.println(" got match ");
-                            continue AcItLoop;
-                        }
+                    if (!labels.contains(thisAC.getLabel())) {
+                        return false;
                     }
-                    //System.out.println(" no match for "+thisAC.debug());
-                    return false;
                 }
                 return true;
             }
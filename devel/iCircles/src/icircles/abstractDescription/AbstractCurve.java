@@ -9,13 +9,20 @@ import icircles.util.DEB;
  */
 public class AbstractCurve implements Comparable<AbstractCurve> {
 
-    static int id = 0;
+    final LayoutContext m_context;
     CurveLabel m_label;
     int m_id;
 
     public AbstractCurve(CurveLabel label) {
-        id++;
-        m_id = id;
+        this(LayoutContext.getDefault(), label);
+    }
+
+    /**
+     * A curve whose id comes from the given context.
+     */
+    public AbstractCurve(LayoutContext context, CurveLabel label) {
+        m_context = context;
+        m_id = context.nextCurveId();
         m_label = label;
     }
 
@@ -23,8 +30,12 @@ public class AbstractCurve implements Comparable<AbstractCurve> {
         return m_label;
     }
 
+    public LayoutContext getContext() {
+        return m_context;
+    }
+
     public AbstractCurve clone() {
-        return new AbstractCurve(m_label);
+        return new AbstractCurve(m_context, m_label);
     }
 
     public int compareTo(AbstractCurve o) {
@@ -38,7 +49,35 @@ public class AbstractCurve implements Comparable<AbstractCurve> {
         }
         int this_id = m_id;
         int other_id = o.m_id;
-        return (this_id < other_id) ? -1 : (this_id == other_id) ? 0 : 1;
+        if (this_id != other_id) {
+            return (this_id < other_id) ? -1 : 1;
+        }
+        // ids are only unique within a context
+        int this_serial = m_context.m_serial;
+        int other_serial = o.m_context.m_serial;
+        return (this_serial < other_serial) ? -1 : (this_serial == other_serial) ? 0 : 1;
+    }
+
+    /**
+     * Consistent with compareTo : two curves are equal if they have the
+     * same label and the same id, in the same context.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof AbstractCurve)) {
+            return false;
+        }
+        AbstractCurve other = (AbstractCurve) obj;
+        return m_id == other.m_id && m_context == other.m_context
+                && (m_label == null ? other.m_label == null : m_label.equals(other.m_label));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (m_label == null ? 0 : m_label.hashCode()) + m_id;
     }
 
     public String debug() {
@@ -78,11 +117,9 @@ public class AbstractCurve implements Comparable<AbstractCurve> {
     }
 
     /** 
-     * Only ever used by test code */
+     * Only ever used by test code - resets the default LayoutContext */
     public static void reset_id_counter() {
-        id = 0;
-        AbstractBasicRegion.clearLibrary();
-        CurveLabel.clearLibrary();
+        LayoutContext.getDefault().reset();
     }
     
 
@@ -31,11 +31,16 @@ package icircles.abstractDescription;
  */
 
 import icircles.util.DEB;
+import icircles.util.PersistentSortedSet;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 // For makeForTesting and friends
@@ -61,11 +66,20 @@ import java.util.TreeSet;
  */
 public class AbstractDescription {
 
-    TreeSet<AbstractCurve> m_contours;
-    Set<AbstractBasicRegion> m_zones;
+    // Persistent, so that the descriptions made from this one by
+    // withoutContour and withAdditions share most of its contours and zones.
+    PersistentSortedSet<AbstractCurve> m_contours;
+    PersistentSortedSet<AbstractBasicRegion> m_zones;
     Set<AbstractBasicRegion> m_shaded_zones;
 
     List<AbstractSpider> m_spiders;
+
+    // For each zone, the zones on the other side of each of its contours,
+    // made when first needed (m_zones is never changed).
+    private HashMap<AbstractBasicRegion, HashMap<AbstractCurve, AbstractBasicRegion>> m_neighbours;
+    // For each contour, the zones inside it in the order of m_zones,
+    // made when first needed.
+    private HashMap<AbstractCurve, List<AbstractBasicRegion>> m_zones_inside;
     
     public AbstractDescription(Set<AbstractCurve> contours,
                Set<AbstractBasicRegion> zones,
@@ -85,12 +99,54 @@ public class AbstractDescription {
 
     public AbstractDescription(Set<AbstractCurve> contours,
                    Set<AbstractBasicRegion> zones) {
-        m_contours = new TreeSet<AbstractCurve>(contours);
-        m_zones = new TreeSet<AbstractBasicRegion>(zones);
+        m_contours = PersistentSortedSet.of(contours);
+        m_zones = PersistentSortedSet.of(zones);
         m_shaded_zones = new TreeSet<AbstractBasicRegion>();
         m_spiders = new ArrayList<AbstractSpider>();
     }
 
+    /**
+     * The description made by removing c: every zone inside c is moved
+     * outside it.  The new description shares the contours and zones which
+     * are unchanged with this one.  It has no shading or spiders.
+     *
+     * @param c
+     * @return a new AbstractDescription without c
+     */
+    public AbstractDescription withoutContour(AbstractCurve c) {
+        List<AbstractBasicRegion> inside = getZonesInside(c);
+        PersistentSortedSet<AbstractBasicRegion> zones = m_zones;
+        for (AbstractBasicRegion z : inside) {
+            zones = zones.without(z);
+        }
+        for (AbstractBasicRegion z : inside) {
+            zones = zones.with(z.moveOutside(c));
+        }
+        return new AbstractDescription(m_contours.without(c), zones);
+    }
+
+    /**
+     * The description made by adding some contours and zones.  The new
+     * description shares this one's contours and zones.  It has no
+     * shading or spiders.
+     *
+     * @param contours
+     * @param zones
+     * @return a new AbstractDescription with the contours and zones added
+     */
+    public AbstractDescription withAdditions(Collection<AbstractCurve> contours,
+            Collection<AbstractBasicRegion> zones) {
+        PersistentSortedSet<AbstractCurve> newContours = m_contours;
+        for (AbstractCurve c : contours) {
+            newContours = newContours.with(c);
+        }
+        PersistentSortedSet<AbstractBasicRegion> newZones = m_zones;
+        for (AbstractBasicRegion z : zones) {
+            newZones = newZones.with(z);
+        }
+        return new AbstractDescription(newContours, newZones);
+    }
+
     public void addSpider(AbstractSpider s){
         // TODO : check that feet are indeed AbstractBasicRegions of the diagram
         m_spiders.add(s);
@@ -121,6 +177,15 @@ public class AbstractDescription {
     public Iterator<AbstractBasicRegion> getZoneIterator() {
         return m_zones.iterator();
     }
+
+    /**
+     * @return the context the zones of this description were made in, or
+     * the default context if it has none
+     */
+    public LayoutContext getContext() {
+        Iterator<AbstractBasicRegion> zIt = m_zones.iterator();
+        return zIt.hasNext() ? zIt.next().getContext() : LayoutContext.getDefault();
+    }
     // expensive - do not use just for querying
     public TreeSet<AbstractCurve> getCopyOfContours() {
         return new TreeSet<AbstractCurve>(m_contours);
@@ -247,11 +312,9 @@ public class AbstractDescription {
             result += c.checksum() * scaling;
             scaling += 0.07;
             scaling += 0.05;
-            for (AbstractBasicRegion z : m_zones) {
-                if (z.is_in(c)) {
-                    result += z.checksum() * scaling;
-                    scaling += 0.09;
-                }
+            for (AbstractBasicRegion z : getZonesInside(c)) {
+                result += z.checksum() * scaling;
+                scaling += 0.09;
             }
         }
         return result;
@@ -278,5 +341,106 @@ public class AbstractDescription {
     public boolean hasShadedZone(AbstractBasicRegion z){
         return m_shaded_zones.contains(z);
     }
+
+    /**
+     * The zones of this description which are inside c, in the same order
+     * as {@link #getZoneIterator}.
+     *
+     * The zones are indexed by their contours the first time this is
+     * called, so later calls are hash lookups.
+     *
+     * @param c
+     * @return an unmodifiable list of the zones inside c
+     */
+    public List<AbstractBasicRegion> getZonesInside(AbstractCurve c) {
+        List<AbstractBasicRegion> result = getZonesInside().get(c);
+        if (result == null) {
+            return Collections.emptyList();
+        }
+        return result;
+    }
+
+    /**
+     * @param c
+     * @return the number of zones of this description inside c
+     */
+    public int getNumZonesInside(AbstractCurve c) {
+        return getZonesInside(c).size();
+    }
+
+    private synchronized HashMap<AbstractCurve, List<AbstractBasicRegion>> getZonesInside() {
+        if (m_zones_inside == null) {
+            HashMap<AbstractCurve, List<AbstractBasicRegion>> zonesInside =
+                    new HashMap<AbstractCurve, List<AbstractBasicRegion>>();
+            for (AbstractBasicRegion z : m_zones) {
+                Iterator<AbstractCurve> acIt = z.getContourIterator();
+                while (acIt.hasNext()) {
+                    AbstractCurve c = acIt.next();
+                    List<AbstractBasicRegion> zones = zonesInside.get(c);
+                    if (zones == null) {
+                        zones = new ArrayList<AbstractBasicRegion>();
+                        zonesInside.put(c, zones);
+                    }
+                    zones.add(z);
+                }
+            }
+            for (Map.Entry<AbstractCurve, List<AbstractBasicRegion>> e : zonesInside.entrySet()) {
+                e.setValue(Collections.unmodifiableList(e.getValue()));
+            }
+            m_zones_inside = zonesInside;
+        }
+        return m_zones_inside;
+    }
+
+    /**
+     * Find the zone of this description which differs from z by just the
+     * contour c, so that c is its straddled contour with z.
+     *
+     * The zones are indexed by their neighbours the first time this is
+     * called, so later calls are hash lookups.
+     *
+     * @param z a zone of this description
+     * @param c
+     * @return the zone across c from z, or null if there is none
+     */
+    public AbstractBasicRegion getNeighbour(AbstractBasicRegion z, AbstractCurve c) {
+        HashMap<AbstractCurve, AbstractBasicRegion> across = getNeighbours().get(z);
+        if (across == null) {
+            return null;
+        }
+        return across.get(c);
+    }
+
+    private synchronized HashMap<AbstractBasicRegion, HashMap<AbstractCurve, AbstractBasicRegion>> getNeighbours() {
+        if (m_neighbours == null) {
+            HashMap<AbstractBasicRegion, HashMap<AbstractCurve, AbstractBasicRegion>> neighbours =
+                    new HashMap<AbstractBasicRegion, HashMap<AbstractCurve, AbstractBasicRegion>>();
+            HashSet<AbstractBasicRegion> zones = new HashSet<AbstractBasicRegion>(m_zones);
+            for (AbstractBasicRegion z : m_zones) {
+                Iterator<AbstractCurve> acIt = z.getContourIterator();
+                while (acIt.hasNext()) {
+                    AbstractCurve c = acIt.next();
+                    AbstractBasicRegion outside = z.moveOutside(c);
+                    if (zones.contains(outside)) {
+                        addNeighbour(neighbours, z, c, outside);
+                        addNeighbour(neighbours, outside, c, z);
+                    }
+                }
+            }
+            m_neighbours = neighbours;
+        }
+        return m_neighbours;
+    }
+
+    private static void addNeighbour(
+            HashMap<AbstractBasicRegion, HashMap<AbstractCurve, AbstractBasicRegion>> neighbours,
+            AbstractBasicRegion z, AbstractCurve c, AbstractBasicRegion across) {
+        HashMap<AbstractCurve, AbstractBasicRegion> map = neighbours.get(z);
+        if (map == null) {
+            map = new HashMap<AbstractCurve, AbstractBasicRegion>();
+            neighbours.put(z, map);
+        }
+        map.put(c, across);
+    }
     
 }
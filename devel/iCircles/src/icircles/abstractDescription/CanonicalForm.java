@@ -0,0 +1,374 @@
+package icircles.abstractDescription;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * A form of an {@link AbstractDescription} which is the same for all
+ * descriptions that differ only in their labels, or in the order of their
+ * contours and zones.  Two descriptions have equal canonical forms exactly
+ * when some renaming of contours takes one to the other (zones, shaded
+ * zones and spider habitats all included).
+ *
+ * The contours are put in a canonical order, found by refining a partition
+ * of the contours by how they sit in the zones, and then trying each way
+ * of breaking ties, keeping the smallest encoding of the zones.  Ties
+ * which turn out to be symmetries of the diagram are only tried once.
+ * <pre>
+ * {@code
+ * CanonicalForm cf = CanonicalForm.of(ad);
+ * String key       = cf.getHash();
+ * AbstractCurve c  = cf.getContours().get(0); // matches contour 0 of any
+ *                                             // description with equal form
+ * }
+ * </pre>
+ */
+public class CanonicalForm {
+
+    private final String m_encoding;
+    private final List<AbstractCurve> m_contours;
+    private String m_hash;
+
+    private CanonicalForm(String encoding, List<AbstractCurve> contours) {
+        m_encoding = encoding;
+        m_contours = contours;
+    }
+
+    /**
+     * @return the contours of the description, in canonical order
+     */
+    public List<AbstractCurve> getContours() {
+        return m_contours;
+    }
+
+    /**
+     * @return the form as a string, with contours written as their
+     * positions in {@link #getContours}
+     */
+    public String getEncoding() {
+        return m_encoding;
+    }
+
+    /**
+     * @return a SHA-256 hash of the encoding, in hex
+     */
+    public synchronized String getHash() {
+        if (m_hash == null) {
+            try {
+                MessageDigest md = MessageDigest.getInstance("SHA-256");
+                byte[] digest = md.digest(m_encoding.getBytes("UTF-8"));
+                StringBuilder b = new StringBuilder();
+                for (byte d : digest) {
+                    b.append(String.format("%02x", d & 0xff));
+                }
+                m_hash = b.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new Error("SHA-256 is not available");
+            } catch (UnsupportedEncodingException e) {
+                throw new Error("UTF-8 is not available");
+            }
+        }
+        return m_hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CanonicalForm)) {
+            return false;
+        }
+        return m_encoding.equals(((CanonicalForm) obj).m_encoding);
+    }
+
+    @Override
+    public int hashCode() {
+        return m_encoding.hashCode();
+    }
+
+    /**
+     * Find the canonical form of a description.
+     * @param ad
+     * @return the canonical form
+     */
+    public static CanonicalForm of(AbstractDescription ad) {
+        return new Search(ad).run();
+    }
+
+    /**
+     * The search for the ordering of contours with the smallest encoding.
+     * Contours are numbered by the order in which they are first met, and
+     * zones are held as arrays of contour numbers.
+     */
+    private static class Search {
+        private final ArrayList<AbstractCurve> curves = new ArrayList<AbstractCurve>();
+        private final HashMap<AbstractCurve, Integer> numbers = new HashMap<AbstractCurve, Integer>();
+        private final ArrayList<int[]> zones = new ArrayList<int[]>();
+        private final ArrayList<int[]> shaded = new ArrayList<int[]>();
+        private final ArrayList<ArrayList<int[]>> spiders = new ArrayList<ArrayList<int[]>>();
+        private final ArrayList<ArrayList<Integer>> zonesOf = new ArrayList<ArrayList<Integer>>();
+        private final boolean[] isShaded;
+
+        private String bestEncoding = null;
+        private int[] bestOrder = null;
+
+        Search(AbstractDescription ad) {
+            for (AbstractCurve c : ad.m_contours) {
+                number(c);
+            }
+            for (AbstractBasicRegion z : ad.m_zones) {
+                zones.add(numbers(z));
+            }
+            for (AbstractBasicRegion z : ad.m_shaded_zones) {
+                shaded.add(numbers(z));
+            }
+            Iterator<AbstractSpider> sIt = ad.getSpiderIterator();
+            while (sIt.hasNext()) {
+                ArrayList<int[]> feet = new ArrayList<int[]>();
+                for (AbstractBasicRegion foot : sIt.next().get_feet()) {
+                    feet.add(numbers(foot));
+                }
+                spiders.add(feet);
+            }
+            isShaded = new boolean[zones.size()];
+            int zi = 0;
+            for (AbstractBasicRegion z : ad.m_zones) {
+                isShaded[zi] = ad.hasShadedZone(z);
+                for (int c : zones.get(zi)) {
+                    zonesOf.get(c).add(zi);
+                }
+                zi++;
+            }
+        }
+
+        private int number(AbstractCurve c) {
+            Integer n = numbers.get(c);
+            if (n == null) {
+                n = curves.size();
+                numbers.put(c, n);
+                curves.add(c);
+                zonesOf.add(new ArrayList<Integer>());
+            }
+            return n;
+        }
+
+        private int[] numbers(AbstractBasicRegion z) {
+            int[] result = new int[z.getNumContours()];
+            int i = 0;
+            Iterator<AbstractCurve> acIt = z.getContourIterator();
+            while (acIt.hasNext()) {
+                result[i++] = number(acIt.next());
+            }
+            return result;
+        }
+
+        CanonicalForm run() {
+            ArrayList<ArrayList<Integer>> partition = new ArrayList<ArrayList<Integer>>();
+            if (!curves.isEmpty()) {
+                ArrayList<Integer> all = new ArrayList<Integer>();
+                for (int i = 0; i < curves.size(); i++) {
+                    all.add(i);
+                }
+                partition.add(all);
+            }
+            search(partition);
+            ArrayList<AbstractCurve> ordered = new ArrayList<AbstractCurve>(curves);
+            for (int i = 0; i < curves.size(); i++) {
+                ordered.set(bestOrder[i], curves.get(i));
+            }
+            return new CanonicalForm(bestEncoding, Collections.unmodifiableList(ordered));
+        }
+
+        /**
+         * Search below a partition, keeping the best leaf found.
+         * @return the encoding of the first leaf below the partition
+         */
+        private String search(ArrayList<ArrayList<Integer>> partition) {
+            refine(partition);
+            int cellIndex = firstNonSingleton(partition);
+            if (cellIndex < 0) {
+                int[] order = orderOf(partition);
+                String encoding = encode(order);
+                if (bestEncoding == null || encoding.compareTo(bestEncoding) < 0) {
+                    bestEncoding = encoding;
+                    bestOrder = order;
+                }
+                return encoding;
+            }
+            ArrayList<Integer> cell = partition.get(cellIndex);
+            String first = null;
+            ArrayList<String> tried = new ArrayList<String>();
+            for (Integer v : cell) {
+                ArrayList<ArrayList<Integer>> child = individualize(partition, cellIndex, v);
+                if (first != null) {
+                    // If the first leaf below v matches the first leaf below
+                    // a vertex already tried, a symmetry takes that vertex to
+                    // v, and v has nothing new to offer.
+                    String leaf = firstLeaf(copy(child));
+                    if (tried.contains(leaf)) {
+                        continue;
+                    }
+                    tried.add(leaf);
+                    search(child);
+                } else {
+                    first = search(child);
+                    tried.add(first);
+                }
+            }
+            return first;
+        }
+
+        private String firstLeaf(ArrayList<ArrayList<Integer>> partition) {
+            while (true) {
+                refine(partition);
+                int cellIndex = firstNonSingleton(partition);
+                if (cellIndex < 0) {
+                    return encode(orderOf(partition));
+                }
+                partition = individualize(partition, cellIndex, partition.get(cellIndex).get(0));
+            }
+        }
+
+        private static int firstNonSingleton(ArrayList<ArrayList<Integer>> partition) {
+            for (int i = 0; i < partition.size(); i++) {
+                if (partition.get(i).size() > 1) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static ArrayList<ArrayList<Integer>> copy(ArrayList<ArrayList<Integer>> partition) {
+            ArrayList<ArrayList<Integer>> result = new ArrayList<ArrayList<Integer>>();
+            for (ArrayList<Integer> cell : partition) {
+                result.add(new ArrayList<Integer>(cell));
+            }
+            return result;
+        }
+
+        private static ArrayList<ArrayList<Integer>> individualize(
+                ArrayList<ArrayList<Integer>> partition, int cellIndex, Integer v) {
+            ArrayList<ArrayList<Integer>> result = copy(partition);
+            ArrayList<Integer> rest = result.get(cellIndex);
+            rest.remove(v);
+            ArrayList<Integer> single = new ArrayList<Integer>();
+            single.add(v);
+            result.add(cellIndex, single);
+            return result;
+        }
+
+        /**
+         * Split cells until every contour in a cell sits the same way in
+         * the zones, as seen through the cells of the other contours.
+         */
+        private void refine(ArrayList<ArrayList<Integer>> partition) {
+            boolean split = true;
+            while (split) {
+                split = false;
+                int[] cellOf = new int[curves.size()];
+                for (int i = 0; i < partition.size(); i++) {
+                    for (Integer v : partition.get(i)) {
+                        cellOf[v] = i;
+                    }
+                }
+                String[] zoneKeys = new String[zones.size()];
+                for (int zi = 0; zi < zones.size(); zi++) {
+                    int[] cells = new int[zones.get(zi).length];
+                    for (int k = 0; k < cells.length; k++) {
+                        cells[k] = cellOf[zones.get(zi)[k]];
+                    }
+                    Arrays.sort(cells);
+                    StringBuilder b = new StringBuilder(isShaded[zi] ? "s" : "u");
+                    for (int c : cells) {
+                        b.append(c).append('.');
+                    }
+                    zoneKeys[zi] = b.toString();
+                }
+                for (int i = 0; i < partition.size(); i++) {
+                    ArrayList<Integer> cell = partition.get(i);
+                    if (cell.size() == 1) {
+                        continue;
+                    }
+                    TreeMap<String, ArrayList<Integer>> bySignature =
+                            new TreeMap<String, ArrayList<Integer>>();
+                    for (Integer v : cell) {
+                        ArrayList<String> keys = new ArrayList<String>();
+                        for (Integer zi : zonesOf.get(v)) {
+                            keys.add(zoneKeys[zi]);
+                        }
+                        Collections.sort(keys);
+                        String signature = keys.toString();
+                        ArrayList<Integer> part = bySignature.get(signature);
+                        if (part == null) {
+                            part = new ArrayList<Integer>();
+                            bySignature.put(signature, part);
+                        }
+                        part.add(v);
+                    }
+                    if (bySignature.size() > 1) {
+                        partition.remove(i);
+                        partition.addAll(i, bySignature.values());
+                        split = true;
+                        break; // the cells have moved - start again
+                    }
+                }
+            }
+        }
+
+        private int[] orderOf(ArrayList<ArrayList<Integer>> partition) {
+            int[] order = new int[curves.size()];
+            for (int i = 0; i < partition.size(); i++) {
+                order[partition.get(i).get(0)] = i;
+            }
+            return order;
+        }
+
+        private String encode(int[] order) {
+            StringBuilder b = new StringBuilder("zones:");
+            b.append(encodeZones(zones, order));
+            b.append(" shaded:");
+            b.append(encodeZones(shaded, order));
+            b.append(" spiders:");
+            ArrayList<String> habitats = new ArrayList<String>();
+            for (ArrayList<int[]> feet : spiders) {
+                habitats.add("[" + encodeZones(feet, order) + "]");
+            }
+            Collections.sort(habitats);
+            for (String h : habitats) {
+                b.append(h);
+            }
+            return b.toString();
+        }
+
+        private static String encodeZones(List<int[]> zs, int[] order) {
+            ArrayList<String> encoded = new ArrayList<String>();
+            for (int[] z : zs) {
+                int[] ranks = new int[z.length];
+                for (int k = 0; k < z.length; k++) {
+                    ranks[k] = order[z[k]];
+                }
+                Arrays.sort(ranks);
+                StringBuilder b = new StringBuilder("(");
+                for (int r : ranks) {
+                    b.append(r).append(',');
+                }
+                encoded.add(b.append(')').toString());
+            }
+            Collections.sort(encoded);
+            StringBuilder b = new StringBuilder();
+            for (String e : encoded) {
+                b.append(e);
+            }
+            return b.toString();
+        }
+    }
+}
@@ -32,47 +32,32 @@ package icircles.abstractDescription;
 
 import icircles.util.DEB;
 
-import java.util.Set;
-import java.util.TreeSet;
-
 /**
  * Stores a label that can be applied to an {@link AbsractCurve}.
  */
 public class CurveLabel implements Comparable<CurveLabel> {
 
     private String m_label;
-    private static Set<CurveLabel> m_library = new TreeSet<CurveLabel>();
-    // or use a WeakReference - then the WeakHashMap will be emptied when
-    // there will be no references for the members any more
-    // but beware to put the item into the WeakHashMap just after you've 
-    // extracted it!
+    // The library of labels is kept by a LayoutContext, in a WeakHashMap
+    // keyed by m_label, so a label is dropped once nothing refers to it.
 
     public static void clearLibrary() {
-        m_library.clear();
+        LayoutContext.getDefault().clearLabels();
     }
 
-    private CurveLabel(String label) {
+    CurveLabel(String label) {
         m_label = label;
     }
 
     public static CurveLabel get(String label) {
-        // TODO: This suboptimal existent label lookup should be fixed. This
-        //       should be used instead:
-        //
-        //              m_library.contains(label);
-        //
-        // The problem seems to stem from the fact that the string is not
-        // comparable with the CurveLabel. I would suggest that instead of a
-        // CurveLabel we use String.
-        for (CurveLabel alreadyThere : m_library) {
-            if (alreadyThere.m_label.equals(label)) {
-                return alreadyThere;
-            }
-        }
+        return get(LayoutContext.getDefault(), label);
+    }
 
-        CurveLabel result = new CurveLabel(label);
-        m_library.add(result);
-        return result;
+    /**
+     * The label for a string, made only once within the context.
+     */
+    public static CurveLabel get(LayoutContext context, String label) {
+        return context.getLabel(label);
     }
 
     public String debug() {
@@ -93,6 +78,22 @@ public class CurveLabel implements Comparable<CurveLabel> {
         return m_label.compareTo(other.m_label);
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CurveLabel)) {
+            return false;
+        }
+        return m_label.equals(((CurveLabel) obj).m_label);
+    }
+
+    @Override
+    public int hashCode() {
+        return m_label.hashCode();
+    }
+
     public double checksum() {
         return (double)m_label.hashCode() * 1E-7;
     }
@@ -0,0 +1,180 @@
+package icircles.abstractDescription;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The symbol tables behind a set of abstract descriptions: the counter
+ * which gives each {@link AbstractCurve} its id, and the libraries which
+ * make sure each {@link CurveLabel} and {@link AbstractBasicRegion} is made
+ * only once.
+ *
+ * Diagrams built in different contexts share nothing, so they can be laid
+ * out on different threads at once.  The curves, regions and labels of one
+ * description must all come from the same context.  Code which doesn't
+ * name a context uses the default one, as returned by {@link #getDefault}.
+ *
+ * The libraries hold labels and regions weakly: once nothing else refers
+ * to a label or region (for example, once the descriptions using it are
+ * gone) it is dropped from the library, so a long-lived context doesn't
+ * keep growing.  The number of labels and regions in the libraries, and
+ * how often a lookup found one already there, are available as metrics.
+ *
+ * A context can be used from more than one thread; its methods are
+ * synchronized on the context.
+ * <pre>
+ * {@code
+ * LayoutContext context     = new LayoutContext();
+ * AbstractDescription ad    = adiag.toAbstractDescription(context);
+ * ConcreteDiagram cd        = new DiagramCreator(ad).createDiagram(size);
+ * }
+ * </pre>
+ */
+public class LayoutContext {
+
+    private static final AtomicInteger contextCount = new AtomicInteger();
+    private static final LayoutContext defaultContext = new LayoutContext();
+
+    // Orders curves from different contexts which have the same label
+    // and id, as ids are only unique within a context.
+    final int m_serial = contextCount.incrementAndGet();
+    private int m_curve_id = 0;
+    // Each key is strongly held by its value (a label's string, a region's
+    // bits), so an entry lasts exactly as long as its label or region.
+    private final WeakHashMap<String, WeakReference<CurveLabel>> m_labels =
+            new WeakHashMap<String, WeakReference<CurveLabel>>();
+    private final WeakHashMap<AbstractBasicRegion.Bits, WeakReference<AbstractBasicRegion>> m_regions =
+            new WeakHashMap<AbstractBasicRegion.Bits, WeakReference<AbstractBasicRegion>>();
+
+    private long m_label_hits = 0;
+    private long m_label_misses = 0;
+    private long m_region_hits = 0;
+    private long m_region_misses = 0;
+
+    /**
+     * The context used by code which doesn't name one, for example
+     * {@link CurveLabel #get(String)} and {@link AbstractCurve #AbstractCurve(CurveLabel)}.
+     *
+     * @return the default context
+     */
+    public static LayoutContext getDefault() {
+        return defaultContext;
+    }
+
+    /**
+     * Start the curve ids again from the beginning and empty the libraries
+     * of labels and regions.  Curves, labels and regions made before the
+     * reset must not be used with those made after it.
+     */
+    public synchronized void reset() {
+        m_curve_id = 0;
+        m_labels.clear();
+        m_regions.clear();
+        m_label_hits = 0;
+        m_label_misses = 0;
+        m_region_hits = 0;
+        m_region_misses = 0;
+    }
+
+    synchronized int nextCurveId() {
+        m_curve_id++;
+        return m_curve_id;
+    }
+
+    synchronized void clearLabels() {
+        m_labels.clear();
+    }
+
+    synchronized void clearRegions() {
+        m_regions.clear();
+    }
+
+    synchronized CurveLabel getLabel(String label) {
+        CurveLabel alreadyThere = deref(m_labels.get(label));
+        if (alreadyThere != null) {
+            m_label_hits++;
+            return alreadyThere;
+        }
+        m_label_misses++;
+        CurveLabel result = new CurveLabel(label);
+        // remove first, as put would keep the key of a dead entry
+        m_labels.remove(label);
+        m_labels.put(result.getLabel(), new WeakReference<CurveLabel>(result));
+        return result;
+    }
+
+    synchronized AbstractBasicRegion getRegion(AbstractBasicRegion.Bits bits) {
+        AbstractBasicRegion alreadyThere = deref(m_regions.get(bits));
+        if (alreadyThere != null) {
+            m_region_hits++;
+        } else {
+            m_region_misses++;
+        }
+        return alreadyThere;
+    }
+
+    /**
+     * Add a region to the library, unless one with the same bits got
+     * there first.
+     *
+     * @return the region in the library
+     */
+    synchronized AbstractBasicRegion addRegion(AbstractBasicRegion.Bits bits, AbstractBasicRegion region) {
+        AbstractBasicRegion alreadyThere = deref(m_regions.get(bits));
+        if (alreadyThere != null) {
+            return alreadyThere;
+        }
+        m_regions.remove(bits);
+        m_regions.put(bits, new WeakReference<AbstractBasicRegion>(region));
+        return region;
+    }
+
+    private static <T> T deref(WeakReference<T> ref) {
+        return ref == null ? null : ref.get();
+    }
+
+    /**
+     * @return the number of labels in the library, including any which
+     * are no longer used but have not yet been collected
+     */
+    public synchronized int getLabelCount() {
+        return m_labels.size();
+    }
+
+    /**
+     * @return the number of regions in the library, including any which
+     * are no longer used but have not yet been collected
+     */
+    public synchronized int getRegionCount() {
+        return m_regions.size();
+    }
+
+    /**
+     * @return how many label lookups found the label already made
+     */
+    public synchronized long getLabelHits() {
+        return m_label_hits;
+    }
+
+    /**
+     * @return how many label lookups had to make a new label
+     */
+    public synchronized long getLabelMisses() {
+        return m_label_misses;
+    }
+
+    /**
+     * @return how many region lookups found the region already made
+     */
+    public synchronized long getRegionHits() {
+        return m_region_hits;
+    }
+
+    /**
+     * @return how many region lookups had to make a new region
+     */
+    public synchronized long getRegionMisses() {
+        return m_region_misses;
+    }
+}
@@ -5,7 +5,10 @@ import icircles.abstractDescription.AbstractCurve;
 import icircles.util.DEB;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
 
 public class AbstractDualGraph {
 
@@ -17,25 +20,44 @@ public class AbstractDualGraph {
         edges = new ArrayList<AbstractDualEdge>();
         // Each abr becomes a node.
         // Neighbouring abrs get edges added between them.
+        // Rather than try every pair of nodes, look up the neighbours of
+        // each node across each of its curves.
+        HashMap<AbstractBasicRegion, ArrayList<Integer>> index =
+                new HashMap<AbstractBasicRegion, ArrayList<Integer>>();
         for (AbstractBasicRegion abr : abrs) {
+            ArrayList<Integer> at = index.get(abr);
+            if (at == null) {
+                at = new ArrayList<Integer>();
+                index.put(abr, at);
+            }
+            at.add(nodes.size());
             nodes.add(new AbstractDualNode(abr));
         }
-        for (AbstractDualNode n : nodes) {
-            boolean found_node_again = false;
-            for (AbstractDualNode n2 : nodes) {
-                if (!found_node_again) {
-                    if (n2 == n) {
-                        found_node_again = true;
-                    }
-                } else {
-                    AbstractCurve straddlingCurve =
-                            n.abr.getStraddledContour(n2.abr);
-                    if (straddlingCurve != null) {
-                        add_edge(n, n2, straddlingCurve);
-                    }
+        // Each edge is found from its node inside the straddling curve.
+        // Add them in the order of the pairs of nodes, so the edges come
+        // out as they would from a scan over all pairs.
+        TreeMap<Long, AbstractCurve> straddles = new TreeMap<Long, AbstractCurve>();
+        for (int i = 0; i < nodes.size(); i++) {
+            AbstractBasicRegion abr = nodes.get(i).abr;
+            Iterator<AbstractCurve> acIt = abr.getContourIterator();
+            while (acIt.hasNext()) {
+                AbstractCurve ac = acIt.next();
+                ArrayList<Integer> partners = index.get(abr.moveOutside(ac));
+                if (partners == null) {
+                    continue;
+                }
+                for (Integer j : partners) {
+                    long lo = Math.min(i, j.intValue());
+                    long hi = Math.max(i, j.intValue());
+                    straddles.put(lo * nodes.size() + hi, ac);
                 }
             }
         }
+        for (Map.Entry<Long, AbstractCurve> e : straddles.entrySet()) {
+            int i = (int) (e.getKey().longValue() / nodes.size());
+            int j = (int) (e.getKey().longValue() % nodes.size());
+            add_edge(nodes.get(i), nodes.get(j), e.getValue());
+        }
     }
 
     private void add_edge(AbstractDualNode n, AbstractDualNode n2,
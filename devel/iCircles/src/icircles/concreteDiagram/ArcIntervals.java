@@ -0,0 +1,202 @@
+package icircles.concreteDiagram;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+
+/**
+ * The parts of a circle which lie inside a ConcreteZone, as intervals of
+ * angle.  Used to choose centres for piercing circles, which have to lie
+ * on the circumference of the circle being pierced.
+ *
+ * Angles are measured as for Math.cos and Math.sin: the point at angle t
+ * is (cx + rad * cos(t), cy + rad * sin(t)).
+ */
+class ArcIntervals {
+
+    private static final double twoPi = 2 * Math.PI;
+
+    private final double cx;
+    private final double cy;
+    private final double rad;
+
+    // sorted, disjoint intervals {from, to} with 0 <= from <= to <= 2pi
+    private ArrayList<double[]> intervals;
+
+    private ArcIntervals(double cx, double cy, double rad) {
+        this.cx = cx;
+        this.cy = cy;
+        this.rad = rad;
+        intervals = new ArrayList<double[]>();
+        intervals.add(new double[]{0, twoPi});
+    }
+
+    /**
+     * Find the angles at which the point on a circle is inside zone, and
+     * at least margin away from its edge (in the sense of
+     * ConcreteZone.largestCircleRadius).
+     * @param zone
+     * @param box the box bounding the zone
+     * @param cx the centre of the circle
+     * @param cy
+     * @param rad the radius of the circle
+     * @param margin
+     * @return
+     */
+    static ArcIntervals inZone(ConcreteZone zone, Rectangle2D.Double box,
+            double cx, double cy, double rad, double margin) {
+        ArcIntervals result = new ArcIntervals(cx, cy, rad);
+        if (!(rad > 0)) {
+            // the circle is just its centre
+            result.keepAllOrNothing(zone.largestCircleRadius(box, cx, cy) >= margin);
+            return result;
+        }
+        for (CircleContour c : zone.getContainingContours()) {
+            result.keepNear(c.cx, c.cy, c.radius + c.nudge - margin);
+        }
+        for (CircleContour c : zone.getExcludingContours()) {
+            double inner = c.radius - c.nudge;
+            if (inner + margin > 0) {
+                result.keepFar(c.cx, c.cy, inner + margin);
+            }
+        }
+        // the box edges, moved in by margin
+        result.keepCos(0, (box.x + margin - cx) / rad);
+        result.keepCos(Math.PI, (cx - (box.x + box.width - margin)) / rad);
+        result.keepCos(Math.PI * 0.5, (box.y + margin - cy) / rad);
+        result.keepCos(Math.PI * 1.5, (cy - (box.y + box.height - margin)) / rad);
+        return result;
+    }
+
+    /**
+     * Keep the angles whose points are within dist of (x, y).
+     */
+    private void keepNear(double x, double y, double dist) {
+        double dx = x - cx;
+        double dy = y - cy;
+        double d = Math.sqrt(dx * dx + dy * dy);
+        if (d == 0 || rad == 0) {
+            keepAllOrNothing(d + rad <= dist && dist >= 0);
+            return;
+        }
+        // |p - (x, y)|^2 = rad^2 + d^2 - 2 rad d cos(t - phi)
+        keepCos(Math.atan2(dy, dx), (rad * rad + d * d - dist * dist) / (2 * rad * d));
+    }
+
+    /**
+     * Keep the angles whose points are at least dist from (x, y).
+     */
+    private void keepFar(double x, double y, double dist) {
+        double dx = x - cx;
+        double dy = y - cy;
+        double d = Math.sqrt(dx * dx + dy * dy);
+        if (d == 0 || rad == 0) {
+            keepAllOrNothing(Math.abs(d - rad) >= dist);
+            return;
+        }
+        keepCos(Math.atan2(dy, dx) + Math.PI, -(rad * rad + d * d - dist * dist) / (2 * rad * d));
+    }
+
+    private void keepAllOrNothing(boolean all) {
+        if (!all) {
+            intervals.clear();
+        }
+    }
+
+    /**
+     * Keep the angles t with cos(t - phi) >= k.
+     */
+    private void keepCos(double phi, double k) {
+        if (k <= -1) {
+            return;
+        } else if (k > 1) {
+            intervals.clear();
+            return;
+        }
+        double half = Math.acos(k);
+        double from = normalise(phi - half);
+        double to = from + 2 * half;
+        ArrayList<double[]> allowed = new ArrayList<double[]>();
+        if (to > twoPi) {
+            allowed.add(new double[]{0, to - twoPi});
+            allowed.add(new double[]{from, twoPi});
+        } else {
+            allowed.add(new double[]{from, to});
+        }
+        intersect(allowed);
+    }
+
+    private void intersect(ArrayList<double[]> other) {
+        ArrayList<double[]> result = new ArrayList<double[]>();
+        int i = 0;
+        int j = 0;
+        while (i < intervals.size() && j < other.size()) {
+            double[] a = intervals.get(i);
+            double[] b = other.get(j);
+            double from = Math.max(a[0], b[0]);
+            double to = Math.min(a[1], b[1]);
+            if (from <= to) {
+                result.add(new double[]{from, to});
+            }
+            if (a[1] < b[1]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        intervals = result;
+    }
+
+    private static double normalise(double angle) {
+        angle = angle % twoPi;
+        if (angle < 0) {
+            angle += twoPi;
+        }
+        return angle;
+    }
+
+    boolean isEmpty() {
+        return intervals.isEmpty();
+    }
+
+    /**
+     * Is the point at this angle inside the intervals?
+     * @param angle
+     * @return
+     */
+    boolean contains(double angle) {
+        angle = normalise(angle);
+        for (double[] interval : intervals) {
+            if (angle >= interval[0] && angle <= interval[1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Choose the angle inside the intervals whose point has the most room
+     * around it in zone (the largest ConcreteZone.largestCircleRadius),
+     * by sampling along each interval.
+     * @param zone
+     * @param box
+     * @param samplesPerInterval
+     * @return the angle, or NaN if there are no intervals
+     */
+    double roomiestAngle(ConcreteZone zone, Rectangle2D.Double box, int samplesPerInterval) {
+        double best = Double.NaN;
+        double bestRoom = Double.NEGATIVE_INFINITY;
+        for (double[] interval : intervals) {
+            for (int k = 0; k < samplesPerInterval; k++) {
+                double angle = interval[0]
+                        + (interval[1] - interval[0]) * (k + 0.5) / samplesPerInterval;
+                double room = zone.largestCircleRadius(box,
+                        cx + rad * Math.cos(angle), cy + rad * Math.sin(angle));
+                if (room > bestRoom) {
+                    bestRoom = room;
+                    best = angle;
+                }
+            }
+        }
+        return best;
+    }
+}
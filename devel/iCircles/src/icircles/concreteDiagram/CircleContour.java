@@ -56,6 +56,13 @@ public class CircleContour {
 //        smallInterior = null;
     }
 
+    void moveTo(double cx, double cy, double radius) {
+        this.cx = cx;
+        this.cy = cy;
+        this.radius = radius;
+        circle = makeEllipse(cx, cy, radius);
+    }
+
     private void scaleAboutZero(double scale) {
         cx *= scale;
         cy *= scale;
@@ -122,7 +129,14 @@ public class CircleContour {
     public int getMaxY() {
         return (int) (cy + radius) + 1;
     }
-    static void fitCirclesToSize(ArrayList<CircleContour> circles, int size)
+    /**
+     * Centre the circles in a square of the given size and scale them to
+     * fill 95% of it.
+     * @return the scale applied, so that lengths chosen when the circles
+     * were drawn (such as DiagramCreator.smallestRadius) can be given at
+     * the new size
+     */
+    static double fitCirclesToSize(ArrayList<CircleContour> circles, int size)
     {
         // work out a suitable size
         int minX = Integer.MAX_VALUE;
@@ -161,6 +175,7 @@ public class CircleContour {
         for (CircleContour cc : circles) {
             cc.shift(size * 0.5, size * 0.5);
         }
+        return scale;
     }
     static Rectangle2D.Double makeBigOuterBox(ArrayList<CircleContour> circles)
     {
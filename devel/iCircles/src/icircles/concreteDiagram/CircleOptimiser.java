@@ -0,0 +1,339 @@
+package icircles.concreteDiagram;
+
+import icircles.util.CancellationToken;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+
+/**
+ * Moves and resizes drawn circles by gradient descent, treating the
+ * centre and radius of every circle as variables.  The objective asks
+ * for
+ * <ul>
+ * <li>the area of each circle to be in proportion to the scores of the
+ * zones inside it,</li>
+ * <li>the overlap of each pair of crossing circles to be in proportion to
+ * the scores of the zones inside both,</li>
+ * <li>a gap of at least clearance between circles (or across the lens
+ * where two cross, or the ring where one is inside another), and a gap
+ * between circles and the box no smaller than clearance or than the
+ * margin the circles started with, whichever is less.</li>
+ * </ul>
+ * The overlaps are lens areas, found (with their derivatives) from the
+ * circles directly, rather than from Areas.  For zones inside three or
+ * more circles these pairwise overlaps only approximate the zone areas.
+ *
+ * Each step is a line search along the gradient, and a step is only
+ * taken if the circles stay in the box and make exactly the same zones
+ * (see {@link ZoneTopology}).  Working out the objective and its gradient
+ * allocates nothing; only the zone check, made once a step looks good,
+ * does.
+ */
+class CircleOptimiser {
+
+    private final static int maxSteps = 200;
+    // the smallest move, in pixels, worth trying
+    private final static double minMove = 1e-3;
+    // the least a step must lower the objective, per unit of gradient
+    // squared, to be taken
+    private final static double sufficientDecrease = 1e-4;
+
+    private final ArrayList<CircleContour> circles;
+    private final Rectangle2D.Double box;
+    private final double clearance;
+    // the gap wanted between circles and the box; 0 for none
+    private final double boxClearance;
+    private final int n;
+
+    private final double[] cx;
+    private final double[] cy;
+    private final double[] r;
+    // a trial step
+    private final double[] tcx;
+    private final double[] tcy;
+    private final double[] tr;
+    // the gradient of the objective at (cx, cy, r)
+    private final double[] gcx;
+    private final double[] gcy;
+    private final double[] gr;
+
+    private final double[] targetArea;
+    // targetOverlap[i * n + j] for the pairs which cross, with i < j
+    private final double[] targetOverlap;
+    private final boolean[] crossing;
+
+    private final HashSet<BitSet> zones;
+
+    /**
+     * @param circles the circles to move, all inside box
+     * @param box
+     * @param circleScores the total score of the zones inside each circle
+     * @param pairScores pairScores[i][j], for i < j, is the total score of
+     * the zones inside circles i and j
+     * @param clearance the gap wanted between circles
+     */
+    CircleOptimiser(ArrayList<CircleContour> circles, Rectangle2D.Double box,
+            double[] circleScores, double[][] pairScores, double clearance) {
+        this.circles = circles;
+        this.box = box;
+        this.clearance = clearance;
+        n = circles.size();
+        cx = new double[n];
+        cy = new double[n];
+        r = new double[n];
+        tcx = new double[n];
+        tcy = new double[n];
+        tr = new double[n];
+        gcx = new double[n];
+        gcy = new double[n];
+        gr = new double[n];
+        targetArea = new double[n];
+        targetOverlap = new double[n * n];
+        crossing = new boolean[n * n];
+
+        double area = 0;
+        double score = 0;
+        for (int i = 0; i < n; i++) {
+            CircleContour cc = circles.get(i);
+            cx[i] = cc.cx;
+            cy[i] = cc.cy;
+            r[i] = cc.radius;
+            area += Math.PI * r[i] * r[i];
+            score += circleScores[i];
+        }
+        // keep the total area of the circles as it is
+        double unit = score > 0 ? area / score : 0;
+        for (int i = 0; i < n; i++) {
+            targetArea[i] = circleScores[i] * unit;
+            for (int j = i + 1; j < n; j++) {
+                double d = Math.hypot(cx[j] - cx[i], cy[j] - cy[i]);
+                crossing[i * n + j] = d < r[i] + r[j] && d > Math.abs(r[i] - r[j]);
+                targetOverlap[i * n + j] = pairScores[i][j] * unit;
+            }
+        }
+        // don't push circles in from a margin narrower than clearance,
+        // such as the one left by CircleContour.fitCirclesToSize
+        double margin = clearance;
+        for (int i = 0; i < n; i++) {
+            margin = Math.min(margin, Math.min(
+                    Math.min(cx[i] - r[i] - box.x, box.x + box.width - cx[i] - r[i]),
+                    Math.min(cy[i] - r[i] - box.y, box.y + box.height - cy[i] - r[i])));
+        }
+        boxClearance = Math.max(0, margin);
+        zones = ZoneTopology.zonesOf(cx, cy, r, n);
+    }
+
+    /**
+     * Move the circles downhill until no step helps, maxSteps steps have
+     * been taken, or token is cancelled.
+     * @param token when to stop, or null
+     * @return the number of steps taken
+     */
+    int run(CancellationToken token) {
+        double e = evaluate(cx, cy, r, true);
+        double gradient = gradientNorm();
+        double t = gradient > 0 ? 0.01 * box.width / gradient : 0;
+        int steps = 0;
+        while (steps < maxSteps && gradient > 0 && (token == null || !token.isCancelled())) {
+            boolean stepped = false;
+            while (t * gradient > minMove) {
+                for (int i = 0; i < n; i++) {
+                    tcx[i] = cx[i] - t * gcx[i];
+                    tcy[i] = cy[i] - t * gcy[i];
+                    tr[i] = Math.max(1, r[i] - t * gr[i]);
+                }
+                double trial = evaluate(tcx, tcy, tr, false);
+                if (trial <= e - sufficientDecrease * t * gradient * gradient
+                        && inBox(tcx, tcy, tr)
+                        && ZoneTopology.zonesOf(tcx, tcy, tr, n).equals(zones)) {
+                    System.arraycopy(tcx, 0, cx, 0, n);
+                    System.arraycopy(tcy, 0, cy, 0, n);
+                    System.arraycopy(tr, 0, r, 0, n);
+                    e = evaluate(cx, cy, r, true);
+                    gradient = gradientNorm();
+                    t *= 2;
+                    stepped = true;
+                    break;
+                }
+                t *= 0.5;
+            }
+            if (!stepped) {
+                break;
+            }
+            steps++;
+        }
+        for (int i = 0; i < n; i++) {
+            circles.get(i).moveTo(cx[i], cy[i], r[i]);
+        }
+        return steps;
+    }
+
+    private double gradientNorm() {
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += gcx[i] * gcx[i] + gcy[i] * gcy[i] + gr[i] * gr[i];
+        }
+        return Math.sqrt(sum);
+    }
+
+    private boolean inBox(double[] x, double[] y, double[] rad) {
+        for (int i = 0; i < n; i++) {
+            if (x[i] - rad[i] < box.x || x[i] + rad[i] > box.x + box.width
+                    || y[i] - rad[i] < box.y || y[i] + rad[i] > box.y + box.height) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the objective for circles (x, y, rad), and if withGradient,
+     * its gradient in gcx, gcy and gr
+     */
+    private double evaluate(double[] x, double[] y, double[] rad, boolean withGradient) {
+        if (withGradient) {
+            for (int i = 0; i < n; i++) {
+                gcx[i] = 0;
+                gcy[i] = 0;
+                gr[i] = 0;
+            }
+        }
+        double e = 0;
+        for (int i = 0; i < n; i++) {
+            if (targetArea[i] > 0) {
+                double err = (Math.PI * rad[i] * rad[i] - targetArea[i]) / targetArea[i];
+                e += err * err;
+                if (withGradient) {
+                    gr[i] += 2 * err * 2 * Math.PI * rad[i] / targetArea[i];
+                }
+            }
+
+            // the gaps to the sides of the box
+            e += gapPenalty(x[i] - rad[i] - box.x, i, -1, 0, withGradient);
+            e += gapPenalty(box.x + box.width - x[i] - rad[i], i, 1, 0, withGradient);
+            e += gapPenalty(y[i] - rad[i] - box.y, i, 0, -1, withGradient);
+            e += gapPenalty(box.y + box.height - y[i] - rad[i], i, 0, 1, withGradient);
+
+            for (int j = i + 1; j < n; j++) {
+                double dx = x[i] - x[j];
+                double dy = y[i] - y[j];
+                double d = Math.max(1e-9, Math.sqrt(dx * dx + dy * dy));
+                double ux = dx / d; // d(d)/d(x[i])
+                double uy = dy / d;
+                double ri = rad[i];
+                double rj = rad[j];
+
+                // overlap of crossing pairs
+                if (crossing[i * n + j]) {
+                    double norm = Math.min(targetArea[i], targetArea[j]);
+                    if (norm > 0) {
+                        double area;
+                        double dAdd = 0;
+                        double dAdri = 0;
+                        double dAdrj = 0;
+                        if (d >= ri + rj) {
+                            area = 0;
+                        } else if (d <= Math.abs(ri - rj)) {
+                            double small = Math.min(ri, rj);
+                            area = Math.PI * small * small;
+                            if (ri < rj) {
+                                dAdri = 2 * Math.PI * ri;
+                            } else {
+                                dAdrj = 2 * Math.PI * rj;
+                            }
+                        } else {
+                            // half the angle of each circle's arc inside
+                            // the other
+                            double ai = Math.acos(clamp((d * d + ri * ri - rj * rj) / (2 * d * ri)));
+                            double aj = Math.acos(clamp((d * d + rj * rj - ri * ri) / (2 * d * rj)));
+                            double halfChord = ri * Math.sin(ai);
+                            area = ri * ri * (ai - Math.sin(ai) * Math.cos(ai))
+                                    + rj * rj * (aj - Math.sin(aj) * Math.cos(aj));
+                            dAdd = -2 * halfChord;
+                            dAdri = 2 * ri * ai;
+                            dAdrj = 2 * rj * aj;
+                        }
+                        double err = (area - targetOverlap[i * n + j]) / norm;
+                        e += err * err;
+                        if (withGradient) {
+                            double dEdA = 2 * err / norm;
+                            gcx[i] += dEdA * dAdd * ux;
+                            gcy[i] += dEdA * dAdd * uy;
+                            gcx[j] -= dEdA * dAdd * ux;
+                            gcy[j] -= dEdA * dAdd * uy;
+                            gr[i] += dEdA * dAdri;
+                            gr[j] += dEdA * dAdrj;
+                        }
+                    }
+                }
+
+                // the gap between the pair: apart, crossing or nested
+                double gap;
+                double dgdd;
+                double dgdri;
+                double dgdrj;
+                double sign = ri >= rj ? 1 : -1;
+                if (d >= ri + rj) {
+                    gap = d - ri - rj;
+                    dgdd = 1;
+                    dgdri = -1;
+                    dgdrj = -1;
+                } else if (d <= Math.abs(ri - rj)) {
+                    gap = Math.abs(ri - rj) - d;
+                    dgdd = -1;
+                    dgdri = sign;
+                    dgdrj = -sign;
+                } else if (ri + rj - d < d - Math.abs(ri - rj)) {
+                    gap = ri + rj - d;
+                    dgdd = -1;
+                    dgdri = 1;
+                    dgdrj = 1;
+                } else {
+                    gap = d - Math.abs(ri - rj);
+                    dgdd = 1;
+                    dgdri = -sign;
+                    dgdrj = sign;
+                }
+                if (gap < clearance) {
+                    double short_by = (clearance - gap) / clearance;
+                    e += short_by * short_by;
+                    if (withGradient) {
+                        double dEdg = -2 * short_by / clearance;
+                        gcx[i] += dEdg * dgdd * ux;
+                        gcy[i] += dEdg * dgdd * uy;
+                        gcx[j] -= dEdg * dgdd * ux;
+                        gcy[j] -= dEdg * dgdd * uy;
+                        gr[i] += dEdg * dgdri;
+                        gr[j] += dEdg * dgdrj;
+                    }
+                }
+            }
+        }
+        return e;
+    }
+
+    /**
+     * The penalty for a gap between circle i and a side of the box less
+     * than boxClearance.  The gap shrinks as the circle moves by (sx, sy), and
+     * as it grows.
+     */
+    private double gapPenalty(double gap, int i, int sx, int sy, boolean withGradient) {
+        if (boxClearance == 0 || gap >= boxClearance) {
+            return 0; // inBox keeps the circles in the box
+        }
+        double short_by = (boxClearance - gap) / boxClearance;
+        if (withGradient) {
+            double dEdg = -2 * short_by / boxClearance;
+            gcx[i] -= dEdg * sx;
+            gcy[i] -= dEdg * sy;
+            gr[i] -= dEdg;
+        }
+        return short_by * short_by;
+    }
+
+    private static double clamp(double cos) {
+        return Math.max(-1, Math.min(1, cos));
+    }
+}
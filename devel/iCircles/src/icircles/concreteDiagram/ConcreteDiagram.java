@@ -1,6 +1,9 @@
 package icircles.concreteDiagram;
 
+import icircles.abstractDescription.AbstractBasicRegion;
+import icircles.abstractDescription.AbstractCurve;
 import icircles.abstractDescription.AbstractDescription;
+import icircles.abstractDescription.AbstractSpider;
 import icircles.util.CannotDrawException;
 import icircles.util.DEB;
 
@@ -8,6 +11,7 @@ import java.awt.Font;
 import java.awt.Point;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 
 public class ConcreteDiagram {
@@ -144,6 +148,126 @@ public class ConcreteDiagram {
     }
 */
     
+    /**
+     * Says which abstract curves, zones and spiders the parts of a copied
+     * diagram should stand for.
+     */
+    interface Relabelling {
+        AbstractCurve curve(AbstractCurve ac);
+        AbstractBasicRegion zone(AbstractBasicRegion abr);
+        AbstractSpider spider(AbstractSpider as);
+    }
+
+    private static final Relabelling sameLabels = new Relabelling() {
+        public AbstractCurve curve(AbstractCurve ac) {
+            return ac;
+        }
+
+        public AbstractBasicRegion zone(AbstractBasicRegion abr) {
+            return abr;
+        }
+
+        public AbstractSpider spider(AbstractSpider as) {
+            return as;
+        }
+    };
+
+    /**
+     * Make a copy of this diagram drawn at another size.  The circles,
+     * spider feet and zones are all scaled, without laying the diagram
+     * out again, so this is much cheaper than another call to
+     * {@link DiagramCreator#createDiagram}.  The result can differ a
+     * little from a fresh layout at that size, as spider feet are placed
+     * for the size first drawn.
+     *
+     * @param size the size of the drawing panel
+     * @return the rescaled copy
+     */
+    public ConcreteDiagram rescaledTo(int size) {
+        return copy(size / box.width, sameLabels);
+    }
+
+    /**
+     * @return a copy of this diagram, to be changed without changing this
+     */
+    ConcreteDiagram copy() {
+        return copy(1.0, sameLabels);
+    }
+
+    /**
+     * Make a copy of this diagram, scaled about (0, 0), whose contours,
+     * zones and spiders stand for those given by relabelling.  Nothing is
+     * laid out again: the copy has the same shape as this diagram.
+     * @param scale
+     * @param relabelling
+     * @return the copy
+     */
+    ConcreteDiagram copy(double scale, Relabelling relabelling) {
+        HashMap<CircleContour, CircleContour> newCircles = new HashMap<CircleContour, CircleContour>();
+        ArrayList<CircleContour> resultCircles = new ArrayList<CircleContour>();
+        for (CircleContour cc : circles) {
+            CircleContour copy = new CircleContour(cc.cx * scale, cc.cy * scale,
+                    cc.radius * scale, relabelling.curve(cc.ac));
+            copy.col = cc.col;
+            copy.stroke = cc.stroke;
+            newCircles.put(cc, copy);
+            resultCircles.add(copy);
+        }
+        ArrayList<ConcreteSpider> resultSpiders = null;
+        if (spiders != null) {
+            resultSpiders = new ArrayList<ConcreteSpider>();
+            for (ConcreteSpider s : spiders) {
+                ConcreteSpider copy = new ConcreteSpider(relabelling.spider(s.as));
+                copy.footRad = s.footRad;
+                HashMap<ConcreteSpiderFoot, ConcreteSpiderFoot> newFeet =
+                        new HashMap<ConcreteSpiderFoot, ConcreteSpiderFoot>();
+                for (ConcreteSpiderFoot foot : s.feet) {
+                    ConcreteSpiderFoot footCopy = new ConcreteSpiderFoot(
+                            foot.getX() * scale, foot.getY() * scale);
+                    footCopy.setSpider(copy);
+                    newFeet.put(foot, footCopy);
+                    copy.feet.add(footCopy);
+                }
+                for (ConcreteSpiderLeg leg : s.legs) {
+                    ConcreteSpiderLeg legCopy = new ConcreteSpiderLeg();
+                    legCopy.from = newFeet.get(leg.from);
+                    legCopy.to = newFeet.get(leg.to);
+                    copy.legs.add(legCopy);
+                }
+                resultSpiders.add(copy);
+            }
+        }
+        ConcreteDiagram result = new ConcreteDiagram(
+                new Rectangle2D.Double(box.x * scale, box.y * scale,
+                                       box.width * scale, box.height * scale),
+                resultCircles,
+                copyZones(shadedZones, newCircles, relabelling),
+                copyZones(unshadedZones, newCircles, relabelling),
+                resultSpiders);
+        result.setFont(font);
+        return result;
+    }
+
+    private static ArrayList<ConcreteZone> copyZones(ArrayList<ConcreteZone> zones,
+            HashMap<CircleContour, CircleContour> newCircles,
+            Relabelling relabelling) {
+        ArrayList<ConcreteZone> result = new ArrayList<ConcreteZone>();
+        for (ConcreteZone z : zones) {
+            ArrayList<CircleContour> containing = new ArrayList<CircleContour>();
+            for (CircleContour cc : z.containingCircles) {
+                containing.add(newCircles.get(cc));
+            }
+            ArrayList<CircleContour> excluding = new ArrayList<CircleContour>();
+            for (CircleContour cc : z.excludingCircles) {
+                excluding.add(newCircles.get(cc));
+            }
+            ConcreteZone copy = new ConcreteZone(relabelling.zone(z.abr), containing, excluding);
+            copy.col = z.col;
+            result.add(copy);
+        }
+        return result;
+    }
+
     public ArrayList<ConcreteSpider> getSpiders() {
         return spiders;
     }
@@ -272,12 +396,12 @@ public class ConcreteDiagram {
      */
     public ConcreteZone getZoneAtPoint(Point p) {
         for (ConcreteZone zone : this.unshadedZones) {
-            if (zone.getShape(box).contains(p)) {
+            if (zone.getGeometry(box).contains(p.x, p.y)) {
                 return zone;
             }
         }
         for (ConcreteZone zone : this.shadedZones) {
-            if (zone.getShape(box).contains(p)) {
+            if (zone.getGeometry(box).contains(p.x, p.y)) {
                 return zone;
             }
         }
@@ -6,12 +6,14 @@ import java.awt.Color;
 import java.awt.geom.Area;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.List;
 
 public class ConcreteZone {
 
     AbstractBasicRegion abr;
     ArrayList<CircleContour> containingCircles;
     ArrayList<CircleContour> excludingCircles;
+    ZoneGeometry geometry;
     Area shape;
 
     public ConcreteZone(AbstractBasicRegion abr,
@@ -20,23 +22,168 @@ public class ConcreteZone {
         this.abr = abr;
         this.containingCircles = containingCircles;
         this.excludingCircles = excludingCircles;
+        geometry = null;
         shape = null;
     }
 
+    /**
+     * The exact geometry of this zone: the part of box inside all the
+     * containing circles and outside all the excluding circles.
+     * This is cached, and only rebuilt if asked for with a box which
+     * would change it.
+     * @param box
+     * @return
+     */
+    public ZoneGeometry getGeometry(Rectangle2D.Double box) {
+        if (geometry != null && !geometry.sameInBox(box)) {
+            geometry = null;
+            shape = null;
+        }
+        if (geometry == null) {
+            geometry = new ZoneGeometry(box, containingCircles, excludingCircles);
+        }
+        return geometry;
+    }
+
+    /**
+     * Make the ConcreteZone for the same abstract zone once another circle
+     * has been drawn.  Any geometry already built for this zone is refined
+     * by the new circle rather than rebuilt from scratch, and kept as it is
+     * if the new circle makes no difference to it.  This zone is unchanged.
+     * @param c the new circle
+     * @param containing whether the zone is inside c
+     * @return
+     */
+    ConcreteZone refine(CircleContour c, boolean containing) {
+        ArrayList<CircleContour> newContaining = new ArrayList<CircleContour>(containingCircles);
+        ArrayList<CircleContour> newExcluding = new ArrayList<CircleContour>(excludingCircles);
+        if (containing) {
+            newContaining.add(c);
+        } else {
+            newExcluding.add(c);
+        }
+        ConcreteZone result = new ConcreteZone(abr, newContaining, newExcluding);
+        if (geometry != null) {
+            result.geometry = geometry.refine(c, containing);
+            if (result.geometry == geometry) {
+                result.shape = shape;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * An Area for drawing this zone, built from getGeometry(box).
+     * Only ask for this if you need an Area (e.g. to paint the zone);
+     * use getGeometry for containment, bounds and area queries.
+     * @param box
+     * @return
+     */
     public Area getShape(Rectangle2D.Double box) {
         if (shape != null) {
             return shape;
         }
+        shape = new Area(getGeometry(box).toShape());
+        return shape;
+    }
+
+    /**
+     * Is the disc with the given centre and radius inside the shape which
+     * getShape(box) would build?  The shape is box, intersected with the
+     * (slightly enlarged) containing circles, minus the (slightly shrunk)
+     * excluding circles, so this only needs distance checks and never
+     * builds an Area.
+     * @param box
+     * @param x
+     * @param y
+     * @param rad
+     * @return whether the disc lies inside the zone
+     */
+    public boolean containsCircle(Rectangle2D.Double box,
+            double x, double y, double rad) {
+        if (x - rad < box.x || x + rad > box.x + box.width
+                || y - rad < box.y || y + rad > box.y + box.height) {
+            return false;
+        }
+        for (CircleContour c : containingCircles) {
+            double dx = x - c.cx;
+            double dy = y - c.cy;
+            double outer = c.radius + c.nudge - rad;
+            if (outer < 0 || dx * dx + dy * dy > outer * outer) {
+                return false;
+            }
+        }
+        for (CircleContour c : excludingCircles) {
+            double dx = x - c.cx;
+            double dy = y - c.cy;
+            double inner = c.radius - c.nudge + rad;
+            if (inner > 0 && dx * dx + dy * dy < inner * inner) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The radius of the largest disc centred at (x, y) which is inside
+     * this zone, in the sense of containsCircle: a disc with this radius
+     * or less passes containsCircle, a bigger one doesn't.  Negative if
+     * (x, y) is not in the zone.
+     * @param box
+     * @param x
+     * @param y
+     * @return
+     */
+    public double largestCircleRadius(Rectangle2D.Double box, double x, double y) {
+        double result = Math.min(
+                Math.min(x - box.x, box.x + box.width - x),
+                Math.min(y - box.y, box.y + box.height - y));
+        for (CircleContour c : containingCircles) {
+            double dx = x - c.cx;
+            double dy = y - c.cy;
+            result = Math.min(result, c.radius + c.nudge - Math.sqrt(dx * dx + dy * dy));
+        }
+        for (CircleContour c : excludingCircles) {
+            double dx = x - c.cx;
+            double dy = y - c.cy;
+            double inner = c.radius - c.nudge;
+            result = Math.min(result, Math.max(Math.sqrt(dx * dx + dy * dy) - inner, -inner));
+        }
+        return result;
+    }
+
+    /**
+     * Make a zone with just the constraints which all the given zones share.
+     * When the zones are all the ways of being inside or outside the circles
+     * they don't share (as the split zones of a piercing are), this is their
+     * union: the seams between them are covered because containing circles
+     * are enlarged and excluding circles shrunk by the nudge.
+     * @param zones
+     * @return
+     */
+    static ConcreteZone commonPart(List<ConcreteZone> zones) {
+        ConcreteZone first = zones.get(0);
+        ArrayList<CircleContour> containing = new ArrayList<CircleContour>(first.containingCircles);
+        ArrayList<CircleContour> excluding = new ArrayList<CircleContour>(first.excludingCircles);
+        for (ConcreteZone z : zones) {
+            containing.retainAll(z.containingCircles);
+            excluding.retainAll(z.excludingCircles);
+        }
+        return new ConcreteZone(null, containing, excluding);
+    }
 
-        Area a = new Area(box);
+    /**
+     * @return the radius of the biggest circle this zone is bounded by.
+     */
+    double largestContourRadius() {
+        double result = 0.0;
         for (CircleContour c : containingCircles) {
-            a.intersect(c.getBigInterior());
+            result = Math.max(result, c.radius);
         }
         for (CircleContour c : excludingCircles) {
-            a.subtract(c.getSmallInterior());
+            result = Math.max(result, c.radius);
         }
-        shape = a;
-        return a;
+        return result;
     }
 
     public ArrayList<CircleContour> getContainingContours() {
@@ -4,6 +4,7 @@ import icircles.abstractDescription.AbstractBasicRegion;
 import icircles.abstractDescription.AbstractCurve;
 import icircles.abstractDescription.AbstractDescription;
 import icircles.abstractDescription.AbstractSpider;
+import icircles.abstractDescription.LayoutContext;
 import icircles.decomposition.Decomposer;
 import icircles.decomposition.DecompositionStep;
 import icircles.decomposition.DecompositionStrategy;
@@ -12,18 +13,29 @@ import icircles.recomposition.RecompData;
 import icircles.recomposition.Recomposer;
 import icircles.recomposition.RecompositionStep;
 import icircles.recomposition.RecompositionStrategy;
+import icircles.util.CancellationToken;
 import icircles.util.CannotDrawException;
 import icircles.util.Colors;
 import icircles.util.DEB;
+import icircles.util.LayoutTimeoutException;
 
 import java.awt.Font;
 import java.awt.Rectangle;
 import java.awt.geom.Area;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * A class which will provide an angle between 0 and 2pi.  For example,
@@ -107,12 +119,8 @@ class JeansGuideSizeStrategy implements GuideSizeStrategy{
         while (cIt.hasNext()) {
             AbstractCurve ac = cIt.next();
             double cScore = 0;
-            Iterator<AbstractBasicRegion> zIt = last_diag.getZoneIterator();
-            while (zIt.hasNext()) {
-                AbstractBasicRegion abr = zIt.next();
-                if (abr.is_in(ac)) {
-                    cScore += zoneScores.get(abr);
-                }
+            for (AbstractBasicRegion abr : last_diag.getZonesInside(ac)) {
+                cScore += zoneScores.get(abr);
             }
             containedZoneScores.put(ac, cScore);
             
@@ -339,15 +347,67 @@ public class DiagramCreator {
     // a CircleContour.
     HashMap<AbstractCurve, CircleContour> abstractToConcreteContourMap;
     ArrayList<CircleContour> drawnCircles;
+    // How growCircleContour sizes a piercing circle.  By default it grows
+    // the circle by factors of 1.5 from a start radius.  With maximalRadii
+    // it finds the biggest circle (up to the guide size) which fits, to
+    // within radiusTolerance.
+    boolean maximalRadii = false;
+    double radiusTolerance = 0.5;
+    // Area approximates circles by cubics, so exact distance tests and
+    // Area tests may disagree when a circle fits to within this fraction
+    // of the sizes of the circles involved.
+    final static double areaSlack = 1e-3;
+    // Whether nested contours and spider feet are placed at the centres
+    // of the largest circles which fit (see InscribedCircle), rather than
+    // by the grid search.  radiusTolerance is the precision of those circles.
+    boolean inscribedCircles = false;
+    // If set, circles are grown at candidate piercing centres on this
+    // executor.  Solutions are still picked from the candidates in order,
+    // so the diagram is the same as without it.
+    ExecutorService executor = null;
+    // Whether a single piercing which fits at none of AngleIterator's
+    // angles is tried at the best point of the arcs where it could fit.
+    boolean adaptiveAngles = false;
+    // How many build steps back createCircles may go to try again when a
+    // step can't be drawn.  Each step may be retried backtracksPerStep
+    // times, with circles backtrackShrink times smaller, placed on a grid
+    // backtrackShrink times finer, each time.
+    int backtrackSteps = 0;
+    final static int backtracksPerStep = 2;
+    final static double backtrackShrink = 0.7;
+    // Whether the circles are moved and resized by CircleOptimiser once
+    // they have all been drawn.
+    boolean optimiseCircles = false;
+
+    /**
+     * The ConcreteZones made so far, with the number of drawnCircles
+     * each one knows about.  Zones are asked for again and again as
+     * circles are added; a cached zone only needs refining by the
+     * circles drawn since it was made.
+     */
+    HashMap<AbstractBasicRegion, CachedZone> zoneCache =
+            new HashMap<AbstractBasicRegion, CachedZone>();
+
+    private static class CachedZone {
+        ConcreteZone zone;
+        int numCircles;
+    }
 
     // Indices for debugging data collection
     int debugImageNumber = 0;
     int debugSize = 50;
+
+    // while createDiagram runs: when to give up, the size asked for, and
+    // whether drawnCircles have been scaled to that size yet
+    CancellationToken cancellation = null;
+    int requestedSize = 0;
+    boolean circlesFitted = false;
     
-    private void init(){
-        Decomposer d = new Decomposer();
+    private void init(DecompositionStrategy decomp_strategy,
+            RecompositionStrategy recomp_strategy){
+        Decomposer d = new Decomposer(decomp_strategy);
         decompSteps.addAll(d.decompose(abstractDiagram));
-        Recomposer r = new Recomposer();
+        Recomposer r = new Recomposer(recomp_strategy);
         recompSteps.addAll(r.recompose(decompSteps));
         abstractToConcreteContourMap = new HashMap<AbstractCurve, CircleContour>();
         drawnCircles = new ArrayList<CircleContour>();
@@ -364,7 +424,7 @@ public class DiagramCreator {
         abstractDiagram = ad;
         decompSteps = new ArrayList<DecompositionStep>();
         recompSteps = new ArrayList<RecompositionStep>();
-        init();
+        init(DecompositionStrategy.getStrategy(), RecompositionStrategy.getStrategy());
     }
 
     /** In this constructor, we take the abstract description
@@ -377,20 +437,243 @@ public class DiagramCreator {
         abstractDiagram = ad;
         decompSteps = new ArrayList<DecompositionStep>();
         recompSteps = new ArrayList<RecompositionStep>();
-        init();
+        init(decomp_strategy, recomp_strategy);
+    }
+
+    /**
+     * Choose whether piercing circles are made as big as will fit
+     * (up to their guide size), rather than grown in steps of 1.5.
+     * Bigger circles leave more room for later build steps, but the
+     * layout differs from the default one.
+     * @param maximal
+     */
+    public void setMaximalRadii(boolean maximal) {
+        maximalRadii = maximal;
+    }
+
+    /**
+     * How close to the biggest radius that fits a maximal piercing circle,
+     * or an inscribed circle, has to be (see setMaximalRadii and
+     * setInscribedCircles).
+     * @param tolerance a positive distance
+     */
+    public void setRadiusTolerance(double tolerance) {
+        if (!(tolerance > 0)) {
+            throw new IllegalArgumentException("radius tolerance must be positive");
+        }
+        radiusTolerance = tolerance;
+    }
+
+    /**
+     * Choose whether nested contours and spider feet are placed in the
+     * largest circles which fit in their zones, rather than found by
+     * searching a grid for a large square.  This gives well-centred
+     * feet and contours, but the layout differs from the default one.
+     * @param inscribed
+     */
+    public void setInscribedCircles(boolean inscribed) {
+        inscribedCircles = inscribed;
+    }
+
+    /**
+     * Grow circles at the candidate positions for piercing circles on
+     * the given executor, rather than one after another.  The diagram
+     * drawn is the same either way.  The executor is not shut down by
+     * this class.
+     * @param executor an executor, or null to evaluate candidates in turn
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Choose whether a single piercing which doesn't fit at any of the
+     * fixed angles tried around the pierced circle is placed at the point
+     * with most room on the arcs of the circle where it could fit,
+     * rather than giving up.  Some diagrams which otherwise can't be
+     * drawn then can be.
+     * @param adaptive
+     */
+    public void setAdaptiveAngles(boolean adaptive) {
+        adaptiveAngles = adaptive;
+    }
+
+    /**
+     * Choose how far back to go when a build step finds no room for its
+     * circles.  Rather than giving up, the last few steps are undone and
+     * drawn again with smaller circles, looked for on a finer grid,
+     * leaving more room for the steps after them.  At most steps * 2
+     * retries are made in all.  With 0 (the default) the first step which
+     * doesn't fit stops the drawing.
+     * @param steps
+     */
+    public void setBacktracking(int steps) {
+        if (steps < 0) {
+            throw new IllegalArgumentException("steps must not be negative");
+        }
+        backtrackSteps = steps;
+    }
+
+    /**
+     * Choose whether the circles, once all drawn, are moved and resized to
+     * bring the areas of circles and of their overlaps nearer to the
+     * sizes the zones inside them call for, and to open up thin gaps.
+     * The zones of the diagram are never changed by this.  It is off by
+     * default.
+     * @param optimise
+     */
+    public void setOptimiseCircles(boolean optimise) {
+        optimiseCircles = optimise;
     }
 
     /** Do the bulk of the work to create a diagram. 
+     * To draw the same diagram at other sizes, rescale the result with
+     * {@link ConcreteDiagram#rescaledTo} rather than calling this again.
      * 
      * @param size
      * @return drawn diagram
      * @throws CannotDrawException
      */
     public ConcreteDiagram createDiagram(int size) throws CannotDrawException {
+        return createDiagram(size, null);
+    }
+
+    /**
+     * Create a diagram, giving up if token is cancelled (or its time runs
+     * out) before the diagram is finished.  The token is checked between
+     * build steps and inside the loops which search for room for circles
+     * and spider feet.
+     *
+     * @param size
+     * @param token when to give up, or null to carry on until done
+     * @return drawn diagram
+     * @throws LayoutTimeoutException if token is cancelled, carrying
+     * the circles drawn so far
+     * @throws CannotDrawException
+     */
+    public ConcreteDiagram createDiagram(int size, CancellationToken token) throws CannotDrawException {
+        cancellation = token;
+        requestedSize = size;
+        circlesFitted = false;
+        try {
+            return createDiagramWithinBudget(size);
+        } finally {
+            cancellation = null;
+        }
+    }
+
+    /**
+     * Create a diagram, and return it as soon as it is drawn, then carry
+     * on improving it on executor (see {@link LayoutRefiner}) until
+     * budgetMillis have passed since the call.  Each better diagram is
+     * given to listener, from the executor's thread; for example
+     * <pre>
+     * {@code
+     * ConcreteDiagram cd = dc.createDiagramAnytime(size, 2000, executor,
+     *     new LayoutRefiner.Listener() {
+     *         public void diagramImproved(final ConcreteDiagram better, double quality) {
+     *             SwingUtilities.invokeLater(new Runnable() {
+     *                 public void run() { panel.setDiagram(better); }
+     *             });
+     *         }
+     *     });
+     * panel.setDiagram(cd);
+     * }
+     * </pre>
+     * The returned diagram is not changed by the refinement.
+     *
+     * @param size
+     * @param budgetMillis how long to spend, drawing and refining
+     * @param executor
+     * @param listener told of each better diagram
+     * @return drawn diagram, before any refinement
+     * @throws LayoutTimeoutException if the budget runs out before the
+     * first diagram is drawn
+     * @throws CannotDrawException
+     */
+    public ConcreteDiagram createDiagramAnytime(int size, long budgetMillis,
+            Executor executor, final LayoutRefiner.Listener listener) throws CannotDrawException {
+        final CancellationToken budget = CancellationToken.withTimeout(budgetMillis);
+        ConcreteDiagram cd = createDiagram(size, budget);
+        if (cd != null) {
+            final LayoutRefiner refiner = new LayoutRefiner(cd, guideSizesOf(cd));
+            executor.execute(new Runnable() {
+                public void run() {
+                    refiner.refine(budget, listener);
+                }
+            });
+        }
+        return cd;
+    }
+
+    /**
+     * Create a diagram, and spend what is left of budgetMillis improving
+     * it (see {@link LayoutRefiner}) before returning the best diagram
+     * made.  A bigger budget gives a better diagram, up to the point
+     * where no small change helps.
+     *
+     * @param size
+     * @param budgetMillis how long to spend, drawing and refining
+     * @return drawn diagram
+     * @throws LayoutTimeoutException if the budget runs out before the
+     * first diagram is drawn
+     * @throws CannotDrawException
+     */
+    public ConcreteDiagram createRefinedDiagram(int size, long budgetMillis) throws CannotDrawException {
+        CancellationToken budget = CancellationToken.withTimeout(budgetMillis);
+        ConcreteDiagram cd = createDiagram(size, budget);
+        if (cd == null) {
+            return null;
+        }
+        return new LayoutRefiner(cd, guideSizesOf(cd)).refine(budget, null);
+    }
+
+    /**
+     * Improve drawnCircles, which have been fitted to size, with a
+     * CircleOptimiser aiming at the zone scores of guideSizes.
+     * @param size
+     * @param fitScale the scale used to fit the circles to size
+     */
+    private void optimiseCircles(int size, double fitScale) {
+        int n = drawnCircles.size();
+        double[] circleScores = new double[n];
+        double[][] pairScores = new double[n][n];
+        for (AbstractBasicRegion abr : guideSizes.getScoredZones()) {
+            double score = guideSizes.getGuideSize(abr);
+            for (int i = 0; i < n; i++) {
+                if (abr.is_in(drawnCircles.get(i).ac)) {
+                    circleScores[i] += score;
+                    for (int j = i + 1; j < n; j++) {
+                        if (abr.is_in(drawnCircles.get(j).ac)) {
+                            pairScores[i][j] += score;
+                        }
+                    }
+                }
+            }
+        }
+        // the gap the circles were drawn with, at the size they now have
+        new CircleOptimiser(drawnCircles, new Rectangle2D.Double(0, 0, size, size),
+                circleScores, pairScores, smallestRadius * fitScale).run(cancellation);
+    }
+
+    /**
+     * @return the guide size of each circle of a diagram just drawn
+     */
+    private double[] guideSizesOf(ConcreteDiagram cd) {
+        ArrayList<CircleContour> circles = cd.getCircles();
+        double[] result = new double[circles.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = guideSizes.getGuideSize(circles.get(i).ac);
+        }
+        return result;
+    }
+
+    private ConcreteDiagram createDiagramWithinBudget(int size) throws CannotDrawException {
     	// Each diagram creation task triggers a fresh set
     	// of debugging information.
         debugSize = size;
         debugImageNumber = 0;        
+        zoneCache.clear();
     	
     	// Some heuristics determine roughly how big we expect contours
     	// to be (e.g. contours containing a lot of zones might be bigger).
@@ -401,6 +684,7 @@ public class DiagramCreator {
         ConcreteDiagram result = null; // scoped outside the try-catch block
         try 
         {
+        checkCancelled();
         boolean ok = createCircles(); // draws at default size
         if (!ok) {
             drawnCircles = null;
@@ -409,7 +693,13 @@ public class DiagramCreator {
         }
         
         // createCircles returned OK
-        CircleContour.fitCirclesToSize(drawnCircles, size); // scales to requested size
+        double fitScale = CircleContour.fitCirclesToSize(drawnCircles, size); // scales to requested size
+        circlesFitted = true;
+        if (optimiseCircles) {
+            optimiseCircles(size, fitScale);
+        }
+        zoneCache.clear(); // the circles have all moved
+        checkCancelled();
 
         // Now that we have the contours drawn, convert drawn circles 
         // into a ConcreteDiagram with shaded zones and spiders
@@ -434,6 +724,318 @@ public class DiagramCreator {
         return result;
     }
     
+    /**
+     * Draw many descriptions, each at its own size, on an executor,
+     * telling listener of each result as it is made (in the order they
+     * finish, not the order of requests).  At most maxInFlight
+     * descriptions are being drawn or waiting to be drawn at once:
+     * requests is only read as far as there is room, so it can be a long
+     * or lazily made sequence.
+     *
+     * Each description is drawn by its own DiagramCreator.  Descriptions
+     * made in separate {@link LayoutContext}s share nothing while they are
+     * drawn; those in one context share its libraries, and take turns to
+     * use them, as its methods are synchronized.  So for drawing to go
+     * faster with more threads, give each description (or each thread's
+     * share of them) a context of its own, with
+     * {@link icircles.input.AbstractDiagram#toAbstractDescription(LayoutContext)}.
+     * Descriptions made without naming a context all share the default
+     * one; a debug warning is given when a batch uses it.  The listener
+     * is called on the calling thread, and the executor is not shut down.
+     *
+     * @param requests the descriptions to be drawn, and their sizes
+     * @param executor
+     * @param maxInFlight
+     * @param listener
+     * @throws InterruptedException if interrupted while waiting for a
+     * result; descriptions already handed to the executor are still drawn
+     */
+    public static void createDiagrams(Iterable<DiagramRequest> requests,
+            ExecutorService executor, int maxInFlight,
+            DiagramResult.Listener listener) throws InterruptedException {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1");
+        }
+        CompletionService<DiagramResult> done = new ExecutorCompletionService<DiagramResult>(executor);
+        int inFlight = 0;
+        int index = 0;
+        boolean warnedOfDefault = false;
+        Iterator<DiagramRequest> requestIt = requests.iterator();
+        while (true) {
+            // make room before reading another request
+            if (inFlight == maxInFlight) {
+                listener.diagramDone(nextResult(done));
+                inFlight--;
+            }
+            if (!requestIt.hasNext()) {
+                break;
+            }
+            DiagramRequest request = requestIt.next();
+            if (!warnedOfDefault && maxInFlight > 1
+                    && request.getDescription().getContext() == LayoutContext.getDefault()) {
+                DEB.out(1, "Warning : descriptions in the default LayoutContext take turns to use it, "
+                        + "so they won't be drawn any faster on more threads");
+                warnedOfDefault = true;
+            }
+            done.submit(new DiagramTask(index, request.getDescription(), request.getSize()));
+            index++;
+            inFlight++;
+        }
+        while (inFlight > 0) {
+            listener.diagramDone(nextResult(done));
+            inFlight--;
+        }
+    }
+
+    /**
+     * Draw many descriptions, all at one size, on an executor, as for
+     * {@link #createDiagrams(Iterable, ExecutorService, int, DiagramResult.Listener)}.
+     *
+     * @param ads the descriptions to be drawn
+     * @param size the size of the drawing panel
+     * @param executor
+     * @param maxInFlight
+     * @param listener
+     * @throws InterruptedException
+     */
+    public static void createDiagrams(Iterable<AbstractDescription> ads, int size,
+            ExecutorService executor, int maxInFlight,
+            DiagramResult.Listener listener) throws InterruptedException {
+        createDiagrams(atSize(ads, size), executor, maxInFlight, listener);
+    }
+
+    /**
+     * Draw many descriptions, each at its own size, on an executor, as
+     * for {@link #createDiagrams(Iterable, ExecutorService, int, DiagramResult.Listener)},
+     * and return the results in the order of requests.
+     *
+     * @param requests the descriptions to be drawn, and their sizes
+     * @param executor
+     * @return a result for each request
+     * @throws InterruptedException
+     */
+    public static List<DiagramResult> createDiagrams(List<DiagramRequest> requests,
+            ExecutorService executor) throws InterruptedException {
+        final DiagramResult[] results = new DiagramResult[requests.size()];
+        createDiagrams(requests, executor, Math.max(1, requests.size()), new DiagramResult.Listener() {
+            public void diagramDone(DiagramResult result) {
+                results[result.getIndex()] = result;
+            }
+        });
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Draw many descriptions, all at one size, on an executor, and return
+     * the results in the order of ads.
+     *
+     * @param ads the descriptions to be drawn
+     * @param size the size of the drawing panel
+     * @param executor
+     * @return a result for each description
+     * @throws InterruptedException
+     */
+    public static List<DiagramResult> createDiagrams(List<AbstractDescription> ads, int size,
+            ExecutorService executor) throws InterruptedException {
+        List<DiagramRequest> requests = new ArrayList<DiagramRequest>(ads.size());
+        for (AbstractDescription ad : ads) {
+            requests.add(new DiagramRequest(ad, size));
+        }
+        return createDiagrams(requests, executor);
+    }
+
+    /**
+     * @return requests for ads, all at size, read from ads as they are
+     * needed
+     */
+    private static Iterable<DiagramRequest> atSize(final Iterable<AbstractDescription> ads,
+            final int size) {
+        return new Iterable<DiagramRequest>() {
+            public Iterator<DiagramRequest> iterator() {
+                final Iterator<AbstractDescription> adIt = ads.iterator();
+                return new Iterator<DiagramRequest>() {
+                    public boolean hasNext() {
+                        return adIt.hasNext();
+                    }
+
+                    public DiagramRequest next() {
+                        return new DiagramRequest(adIt.next(), size);
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Draw a description using every combination of decomposition and
+     * recomposition strategy at once, on executor, and return the first
+     * diagram drawn.  The other attempts are then cancelled.  The default
+     * combination is started first, so it wins any tie for threads, but
+     * which diagram comes back depends on which attempt finishes first.
+     * The attempts share a {@link CancellationToken}, which is cancelled
+     * once there is a result, so the others stop soon after.
+     *
+     * This takes about as long as the slowest attempt needed, rather than
+     * the sum of all the attempts made one after another.  The executor
+     * is not shut down.
+     *
+     * @param ad the description to be drawn
+     * @param size the size of the drawing panel
+     * @param executor
+     * @return the first diagram drawn, or null if no attempt drew one
+     * and none threw
+     * @throws CannotDrawException the failure of the first attempt to
+     * fail, if none drew the diagram
+     * @throws InterruptedException
+     */
+    public static ConcreteDiagram createDiagramRacing(final AbstractDescription ad, final int size,
+            ExecutorService executor) throws CannotDrawException, InterruptedException {
+        CompletionService<ConcreteDiagram> done = new ExecutorCompletionService<ConcreteDiagram>(executor);
+        ArrayList<Future<ConcreteDiagram>> attempts = new ArrayList<Future<ConcreteDiagram>>();
+        final CancellationToken stop = new CancellationToken();
+        try {
+            for (final int[] strategies : strategyCombinations()) {
+                attempts.add(done.submit(new Callable<ConcreteDiagram>() {
+                    public ConcreteDiagram call() throws CannotDrawException {
+                        DiagramCreator dc = new DiagramCreator(ad,
+                                DecompositionStrategy.getStrategy(strategies[0]),
+                                RecompositionStrategy.getStrategy(strategies[1]));
+                        return dc.createDiagram(size, stop);
+                    }
+                }));
+            }
+            CannotDrawException firstFailure = null;
+            for (int i = 0; i < attempts.size(); i++) {
+                try {
+                    ConcreteDiagram cd = done.take().get();
+                    if (cd != null) {
+                        return cd;
+                    }
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof CannotDrawException) {
+                        if (firstFailure == null) {
+                            firstFailure = (CannotDrawException) cause;
+                        }
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    } else {
+                        throw new RuntimeException(cause);
+                    }
+                }
+            }
+            if (firstFailure != null) {
+                throw firstFailure;
+            }
+            return null;
+        } finally {
+            stop.cancel();
+            for (Future<ConcreteDiagram> attempt : attempts) {
+                attempt.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * @return pairs {decomposition strategy, recomposition strategy} of
+     * every combination, the default first
+     */
+    static List<int[]> strategyCombinations() {
+        ArrayList<int[]> result = new ArrayList<int[]>();
+        int[] decomps = {DecompositionStrategy.SORT_ORDER, DecompositionStrategy.SORT_ORDER_REV,
+                         DecompositionStrategy.INNERMOST, DecompositionStrategy.PIERCEDFIRST};
+        int[] recomps = {RecompositionStrategy.RECOMPOSE_NESTED,
+                         RecompositionStrategy.RECOMPOSE_SINGLY_PIERCED,
+                         RecompositionStrategy.RECOMPOSE_DOUBLY_PIERCED};
+        result.add(new int[]{DecompositionStrategy.strategy, RecompositionStrategy.RECOMPOSE_DOUBLY_PIERCED});
+        for (int d : decomps) {
+            for (int r : recomps) {
+                if (d != result.get(0)[0] || r != result.get(0)[1]) {
+                    result.add(new int[]{d, r});
+                }
+            }
+        }
+        return result;
+    }
+
+    private static DiagramResult nextResult(CompletionService<DiagramResult> done)
+            throws InterruptedException {
+        try {
+            return done.take().get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Draws one description of a batch.
+     */
+    private static class DiagramTask implements Callable<DiagramResult> {
+        final int index;
+        final AbstractDescription ad;
+        final int size;
+
+        DiagramTask(int index, AbstractDescription ad, int size) {
+            this.index = index;
+            this.ad = ad;
+            this.size = size;
+        }
+
+        public DiagramResult call() {
+            try {
+                ConcreteDiagram cd = new DiagramCreator(ad).createDiagram(size);
+                return new DiagramResult(index, ad, size, cd, null);
+            } catch (CannotDrawException x) {
+                return new DiagramResult(index, ad, size, null, x);
+            }
+        }
+    }
+
+    /**
+     * @throws LayoutTimeoutException if the cancellation token given to
+     * createDiagram has been cancelled
+     */
+    private void checkCancelled() throws LayoutTimeoutException {
+        if (cancellation != null && cancellation.isCancelled()) {
+            throw new LayoutTimeoutException(
+                    cancellation.hasTimedOut() ? "ran out of time" : "cancelled",
+                    partialDiagram());
+        }
+    }
+
+    /**
+     * @return a diagram of copies of the circles drawn so far, scaled to
+     * the size asked for
+     */
+    private ConcreteDiagram partialDiagram() {
+        ArrayList<CircleContour> circles = new ArrayList<CircleContour>();
+        if (drawnCircles != null) {
+            for (CircleContour cc : drawnCircles) {
+                circles.add(new CircleContour(cc));
+            }
+        }
+        if (!circlesFitted && !circles.isEmpty()) {
+            CircleContour.fitCirclesToSize(circles, requestedSize);
+        }
+        ConcreteDiagram result = new ConcreteDiagram(new Rectangle2D.Double(0, 0, requestedSize, requestedSize),
+                circles, new ArrayList<ConcreteZone>(), new ArrayList<ConcreteZone>(),
+                new ArrayList<ConcreteSpider>());
+        result.setFont(font);
+        return result;
+    }
+
     private boolean foot_is_on_leg(ConcreteSpiderFoot foot, ConcreteSpiderLeg leg, double tol)
     {
         double sf_x = foot.getX() - leg.from.getX();
@@ -524,7 +1126,7 @@ public class DiagramCreator {
             // Build tiny contours.
             ArrayList<AbstractCurve> acs = new ArrayList<AbstractCurve>();
             for (int i = 0; i < num_required.intValue(); i++) {
-                acs.add(new AbstractCurve(null));
+                acs.add(new AbstractCurve(abr.getContext(), null));
             }
             // Work out which zone they need to go into.
             AbstractBasicRegion zone_in_last_diag = last_diag.getLabelEquivalentZone(abr);
@@ -534,6 +1136,7 @@ public class DiagramCreator {
             // Use the function placeContour as if we were placing
             // nested contours inside this zone.  That will give us
             // circle centers to use for spider feet positions.
+            checkCancelled();
             ArrayList<CircleContour> cs = placeContours(box, smallestRadius, 3,
                     zone_in_last_diag, last_diag, acs, 3);
             for (CircleContour cc : cs) {
@@ -625,6 +1228,7 @@ public class DiagramCreator {
         
         boolean check_feet_placements = true;
         while(check_feet_placements){
+        checkCancelled();
         check_feet_placements = false;
         for (ConcreteSpider cs : spiders) {
             if(check_feet_placements)//(start again)
@@ -655,13 +1259,12 @@ public class DiagramCreator {
                             AbstractBasicRegion abr = feet_and_zones.get(foot);
 
                             ConcreteZone cz = makeConcreteZone(abr);
-                            Area a = new Area(cz.getShape(box));
-                            
+
                             double new_y = old_y + 5 * tol; // how far to nudge it?
 //                          double new_x = old_x + 2 * tol;
                             double new_x = old_x;
                             CircleContour test = new CircleContour(new_x, new_y, tol, null);
-                            if (circleInArea(test, a)) {
+                            if (circleInZone(test, cz, box)) {
                                 foot.setX(new_x);
                                 foot.setY(new_y);
                                 if(foot_is_on_leg(foot, leg, tol)){
@@ -675,7 +1278,7 @@ public class DiagramCreator {
                             new_x = old_x - 5 * tol;
                             new_y = old_y - 5 * tol;
                             test = new CircleContour(new_x, new_y, tol, null);
-                            if (circleInArea(test, a)) {
+                            if (circleInZone(test, cz, box)) {
                                 foot.setX(new_x);
                                 foot.setY(new_y);
                                 if(foot_is_on_leg(foot, leg, tol)){
@@ -689,7 +1292,7 @@ public class DiagramCreator {
                             new_x = old_x + 5 * tol;
                             new_y = old_y - 5 * tol;
                             test = new CircleContour(new_x, new_y, tol, null);
-                            if (circleInArea(test, a)) {
+                            if (circleInZone(test, cz, box)) {
                                 foot.setX(new_x);
                                 foot.setY(new_y);
                                 if(foot_is_on_leg(foot, leg, tol)){
@@ -703,7 +1306,7 @@ public class DiagramCreator {
                             new_x = old_x - 5 * tol;
                             new_y = old_y + 5 * tol;
                             test = new CircleContour(new_x, new_y, tol, null);
-                            if (circleInArea(test, a)) {
+                            if (circleInZone(test, cz, box)) {
                                 foot.setX(new_x);
                                 foot.setY(new_y);
                                 if(foot_is_on_leg(foot, leg, tol)){
@@ -787,6 +1390,23 @@ public class DiagramCreator {
      * @return
      */
     private ConcreteZone makeConcreteZone(AbstractBasicRegion z) {
+        CachedZone cached = zoneCache.get(z);
+        if (cached == null) {
+            cached = new CachedZone();
+            cached.zone = buildConcreteZone(z);
+            cached.numCircles = drawnCircles.size();
+            zoneCache.put(z, cached);
+        } else {
+            while (cached.numCircles < drawnCircles.size()) {
+                CircleContour c = drawnCircles.get(cached.numCircles);
+                cached.zone = cached.zone.refine(c, z.is_in(c.ac));
+                cached.numCircles++;
+            }
+        }
+        return cached.zone;
+    }
+
+    private ConcreteZone buildConcreteZone(AbstractBasicRegion z) {
         ArrayList<CircleContour> includingCircles = new ArrayList<CircleContour>();
         ArrayList<CircleContour> excludingCircles = new ArrayList<CircleContour>(drawnCircles);
         Iterator<AbstractCurve> acIt = z.getContourIterator();
@@ -816,409 +1436,520 @@ public class DiagramCreator {
         // Iterate through the sequence of BuildSteps, incrementally
         // building up the drawn diagram by choosing the circle placement
         // for the circles in each BuildStep.
-        BuildStep thisBuildStep = buildStepsHead;
-        stepLoop:
-        while (thisBuildStep != null) {
+        ArrayList<BuildStep> steps = new ArrayList<BuildStep>();
+        for (BuildStep bs = buildStepsHead; bs != null; bs = bs.next) {
+            steps.add(bs);
+        }
+        // Before each step, what had been drawn; and for each step, how
+        // many times it has been retried with smaller circles.
+        ArrayList<Checkpoint> checkpoints = new ArrayList<Checkpoint>();
+        int[] retries = new int[steps.size()];
+        int backtracksLeft = backtrackSteps * backtracksPerStep;
+        int stepIndex = 0;
+        while (stepIndex < steps.size()) {
             DEB.out(2, "new build step");
-            
-            // We have built some circles so far.  Make an outerBox 
-            // from those we have already drawn.  This helps if we have
-            // to add circles outside existing ones.
-            Rectangle2D.Double outerBox = CircleContour.makeBigOuterBox(drawnCircles);
-
-            // A BuildStep corresponds to one or more RecompositionSteps.
-            if (thisBuildStep.recomp_data.size() > 1) {
-            	// We have chosen to draw more than one circle at once.
-                if (thisBuildStep.recomp_data.get(0).split_zones.size() == 1) {
-                    // We have chosen to draw more than one nested 
-                	// circle in a zone all at once.
-                	
-                	// Which zone are we adding to?
-                    RecompData rd = thisBuildStep.recomp_data.get(0);
-                    AbstractBasicRegion zone = rd.split_zones.get(0);
-
-                    RecompositionStep last_step = recompSteps.get(recompSteps.size() - 1);
-                    AbstractDescription last_diag = last_step.to();
-
-                    // Find out our guide size.  Assume the guide size for all
-                    // our RecompDatas are equal - so just find out 1st.
-                    AbstractCurve ac = rd.added_curve;
-                    double suggested_rad = guideSizes.getGuideSize(ac);
-
-                    // Build a set of AbstractCurves for all the circles we
-                    // seek to insert.
-                    ArrayList<AbstractCurve> acs = new ArrayList<AbstractCurve>();
-                    for (RecompData rd2 : thisBuildStep.recomp_data) {
-                        ac = rd2.added_curve;
-                        acs.add(ac);
+            checkCancelled();
+            if (checkpoints.size() <= stepIndex) {
+                checkpoints.add(new Checkpoint());
+            }
+            try {
+                if (!drawBuildStep(steps.get(stepIndex), buildStepsHead,
+                        Math.pow(backtrackShrink, retries[stepIndex]))) {
+                    return false;
+                }
+                stepIndex++;
+            } catch (LayoutTimeoutException x) {
+                throw x;
+            } catch (CannotDrawException x) {
+                // Go back to the latest of the last few steps which can
+                // still be retried, and draw again from there.
+                int retry = -1;
+                for (int k = stepIndex; k >= 0 && k >= stepIndex - backtrackSteps; k--) {
+                    if (retries[k] < backtracksPerStep) {
+                        retry = k;
+                        break;
                     }
+                }
+                if (backtracksLeft == 0 || retry < 0) {
+                    throw x;
+                }
+                DEB.out(2, "backtrack to build step " + retry + " after " + x.message);
+                backtracksLeft--;
+                retries[retry]++;
+                for (int k = retry + 1; k < retries.length; k++) {
+                    retries[k] = 0;
+                }
+                checkpoints.get(retry).restore();
+                checkpoints.subList(retry + 1, checkpoints.size()).clear();
+                stepIndex = retry;
+            }
+        }
 
-                    // Call placeContours to decide how to arrange the circles 
-                    // in our zone.
-                    ArrayList<CircleContour> cs = placeContours(outerBox, 
-                    		smallestRadius, suggested_rad,
-                            zone, last_diag, acs, debugImageNumber);
-
-                    if (cs != null && cs.size() > 0) {
-                        DEB.assertCondition(cs.size() == thisBuildStep.recomp_data.size(), "not enough circles for rds");
-                        for (int i = 0; i < cs.size(); i++) {
-                            CircleContour c = cs.get(i);
-                            ac = thisBuildStep.recomp_data.get(i).added_curve;
-                            DEB.assertCondition(
-                                    c.ac.getLabel() == ac.getLabel(), "mismatched labels");
-                            abstractToConcreteContourMap.put(ac, c);
-                            addCircle(c);
-                        }
-                        thisBuildStep = thisBuildStep.next;
-                        continue stepLoop;
+        return true;
+    }
+
+    /**
+     * What had been drawn before a build step, so that drawing can go
+     * back to it.  The circles themselves are not changed once drawn,
+     * so only the collections need copying.
+     */
+    private class Checkpoint {
+        final ArrayList<CircleContour> circles = new ArrayList<CircleContour>(drawnCircles);
+        final HashMap<AbstractCurve, CircleContour> contourMap =
+                new HashMap<AbstractCurve, CircleContour>(abstractToConcreteContourMap);
+        final int imageNumber = debugImageNumber;
+
+        void restore() {
+            drawnCircles.clear();
+            drawnCircles.addAll(circles);
+            abstractToConcreteContourMap.clear();
+            abstractToConcreteContourMap.putAll(contourMap);
+            debugImageNumber = imageNumber;
+            zoneCache.clear(); // the cached zones may use circles now gone
+        }
+    }
+
+    /**
+     * Choose the circles for one build step, adding them to drawnCircles.
+     * @param thisBuildStep
+     * @param buildStepsHead the first build step
+     * @param radiusScale how much smaller than their guide sizes to make
+     * the circles: 1 the first time a step is drawn, less when retried
+     * @return false if the step can't be drawn, and drawing should stop
+     * @throws CannotDrawException
+     */
+    private boolean drawBuildStep(BuildStep thisBuildStep, BuildStep buildStepsHead,
+            double radiusScale) throws CannotDrawException {
+        
+        // We have built some circles so far.  Make an outerBox 
+        // from those we have already drawn.  This helps if we have
+        // to add circles outside existing ones.
+        Rectangle2D.Double outerBox = CircleContour.makeBigOuterBox(drawnCircles);
+
+        // A retried step looks for room on a finer grid, too.
+        int gridSize = (int) Math.max(1, Math.round(smallestRadius * radiusScale));
+
+        // A BuildStep corresponds to one or more RecompositionSteps.
+        if (thisBuildStep.recomp_data.size() > 1) {
+        	// We have chosen to draw more than one circle at once.
+            if (thisBuildStep.recomp_data.get(0).split_zones.size() == 1) {
+                // We have chosen to draw more than one nested 
+            	// circle in a zone all at once.
+            	
+            	// Which zone are we adding to?
+                RecompData rd = thisBuildStep.recomp_data.get(0);
+                AbstractBasicRegion zone = rd.split_zones.get(0);
+
+                RecompositionStep last_step = recompSteps.get(recompSteps.size() - 1);
+                AbstractDescription last_diag = last_step.to();
+
+                // Find out our guide size.  Assume the guide size for all
+                // our RecompDatas are equal - so just find out 1st.
+                AbstractCurve ac = rd.added_curve;
+                double suggested_rad = guideSizes.getGuideSize(ac) * radiusScale;
+
+                // Build a set of AbstractCurves for all the circles we
+                // seek to insert.
+                ArrayList<AbstractCurve> acs = new ArrayList<AbstractCurve>();
+                for (RecompData rd2 : thisBuildStep.recomp_data) {
+                    ac = rd2.added_curve;
+                    acs.add(ac);
+                }
+
+                // Call placeContours to decide how to arrange the circles 
+                // in our zone.
+                ArrayList<CircleContour> cs = placeContours(outerBox, 
+                		gridSize, suggested_rad,
+                        zone, last_diag, acs, debugImageNumber);
+
+                if (cs != null && cs.size() > 0) {
+                    DEB.assertCondition(cs.size() == thisBuildStep.recomp_data.size(), "not enough circles for rds");
+                    for (int i = 0; i < cs.size(); i++) {
+                        CircleContour c = cs.get(i);
+                        ac = thisBuildStep.recomp_data.get(i).added_curve;
+                        DEB.assertCondition(
+                                c.ac.getLabel() == ac.getLabel(), "mismatched labels");
+                        abstractToConcreteContourMap.put(ac, c);
+                        addCircle(c);
                     }
-                } else if (thisBuildStep.recomp_data.get(0).split_zones.size() == 2) {
-                	// We are seeking to place multiple 1-piercings around
-                	// between a pair of adjacent "split zones".
-
-                    // Look at the 1st 1-piercing (assume others similar)
-                    RecompData rd0 = thisBuildStep.recomp_data.get(0);
-                    AbstractBasicRegion abr0 = rd0.split_zones.get(0);
-                    AbstractBasicRegion abr1 = rd0.split_zones.get(1);
-                    AbstractCurve piercingCurve = rd0.added_curve;
-
-                    AbstractCurve pierced_ac = abr0.getStraddledContour(abr1);
-                    CircleContour pierced_cc = abstractToConcreteContourMap.get(pierced_ac);
-                    ConcreteZone cz0 = makeConcreteZone(abr0);
-                    ConcreteZone cz1 = makeConcreteZone(abr1);
-
-                    // Build a combined area for the pair of split zones 
-                    Area a = new Area(cz0.getShape(outerBox));
-                    a.add(cz1.getShape(outerBox));
-
-                    double suggested_rad = guideSizes.getGuideSize(piercingCurve);
-
-                    DEB.show(4, a, "a for 1-piercings " + debugImageNumber);
-
-                    // We have made a piercing which is centred on the circumference of circle c.
-                    // but if the contents of rd.addedCurve are not equally balanced between
-                    // things inside c and things outside, we may end up squashing lots
-                    // into half of rd.addedCurve, leaving the other half looking empty.
-                    // See if we can nudge c outwards or inwards to accommodate
-                    // its contents.
-
-                    // iterate through zoneScores, looking for zones inside c,
-                    // then ask whether they are inside or outside cc.  If we
-                    // get a big score outside, then try to move c outwards.
-
-                    //  HashMap<AbstractBasicRegion, Double> zoneScores;
-                    double score_in_c = 0.0;
-                    double score_out_of_c = 0.0;
-
-                    double center_of_circle_lies_on_rad = pierced_cc.radius;
-
-                    Set<AbstractBasicRegion> allZones = guideSizes.getScoredZones();
-                    for (AbstractBasicRegion abr : allZones) {
-                        DEB.out(1, "compare " + abr.debug() + " against " + piercingCurve.debug());
-                        if (!abr.is_in(piercingCurve)) {
-                            continue;
-                        }
-                        DEB.out(1, "OK " + abr.debug() + " is in " + piercingCurve.debug() + ", so compare against " + pierced_ac.debug());
-                        if (abr.is_in(pierced_ac)) {
-                            score_in_c += guideSizes.getGuideSize(abr);
-                        } else {
-                            score_out_of_c += guideSizes.getGuideSize(abr);
-                        }
+                    return true;
+                }
+            } else if (thisBuildStep.recomp_data.get(0).split_zones.size() == 2) {
+            	// We are seeking to place multiple 1-piercings around
+            	// between a pair of adjacent "split zones".
+
+                // Look at the 1st 1-piercing (assume others similar)
+                RecompData rd0 = thisBuildStep.recomp_data.get(0);
+                AbstractBasicRegion abr0 = rd0.split_zones.get(0);
+                AbstractBasicRegion abr1 = rd0.split_zones.get(1);
+                AbstractCurve piercingCurve = rd0.added_curve;
+
+                AbstractCurve pierced_ac = abr0.getStraddledContour(abr1);
+                CircleContour pierced_cc = abstractToConcreteContourMap.get(pierced_ac);
+                ConcreteZone cz0 = makeConcreteZone(abr0);
+                ConcreteZone cz1 = makeConcreteZone(abr1);
+
+                // Build a combined area for the pair of split zones 
+                Area a = new Area(cz0.getShape(outerBox));
+                a.add(cz1.getShape(outerBox));
+
+                double suggested_rad = guideSizes.getGuideSize(piercingCurve) * radiusScale;
+
+                DEB.show(4, a, "a for 1-piercings " + debugImageNumber);
+
+                // We have made a piercing which is centred on the circumference of circle c.
+                // but if the contents of rd.addedCurve are not equally balanced between
+                // things inside c and things outside, we may end up squashing lots
+                // into half of rd.addedCurve, leaving the other half looking empty.
+                // See if we can nudge c outwards or inwards to accommodate
+                // its contents.
+
+                // iterate through zoneScores, looking for zones inside c,
+                // then ask whether they are inside or outside cc.  If we
+                // get a big score outside, then try to move c outwards.
+
+                //  HashMap<AbstractBasicRegion, Double> zoneScores;
+                double score_in_c = 0.0;
+                double score_out_of_c = 0.0;
+
+                double center_of_circle_lies_on_rad = pierced_cc.radius;
+
+                Set<AbstractBasicRegion> allZones = guideSizes.getScoredZones();
+                for (AbstractBasicRegion abr : allZones) {
+                    DEB.out(1, "compare " + abr.debug() + " against " + piercingCurve.debug());
+                    if (!abr.is_in(piercingCurve)) {
+                        continue;
                     }
-                    DEB.out(3, "scores for " + piercingCurve + " are inside=" + score_in_c + " and outside=" + score_out_of_c);
-
-                    if (score_out_of_c > score_in_c) {
-                        double nudge = suggested_rad * 0.3;
-                        center_of_circle_lies_on_rad += nudge;
-                    } else if (score_out_of_c < score_in_c) {
-                        double nudge = Math.min(suggested_rad * 0.3, (pierced_cc.radius * 2 - suggested_rad) * 0.5);
-                        center_of_circle_lies_on_rad -= nudge;
+                    DEB.out(1, "OK " + abr.debug() + " is in " + piercingCurve.debug() + ", so compare against " + pierced_ac.debug());
+                    if (abr.is_in(pierced_ac)) {
+                        score_in_c += guideSizes.getGuideSize(abr);
+                    } else {
+                        score_out_of_c += guideSizes.getGuideSize(abr);
                     }
+                }
+                DEB.out(3, "scores for " + piercingCurve + " are inside=" + score_in_c + " and outside=" + score_out_of_c);
+
+                if (score_out_of_c > score_in_c) {
+                    double nudge = suggested_rad * 0.3;
+                    center_of_circle_lies_on_rad += nudge;
+                } else if (score_out_of_c < score_in_c) {
+                    double nudge = Math.min(suggested_rad * 0.3, (pierced_cc.radius * 2 - suggested_rad) * 0.5);
+                    center_of_circle_lies_on_rad -= nudge;
+                }
 
-                    double guide_rad = guideSizes.getGuideSize(thisBuildStep.recomp_data.get(0).added_curve);
-                    int sampleSize = (int) (Math.PI / Math.asin(guide_rad / pierced_cc.radius));
-                    if (sampleSize >= thisBuildStep.recomp_data.size()) {
-                        int num_ok = 0;
-                        for (int i = 0; i < sampleSize; i++) {
-                            double angle = i * Math.PI * 2.0 / sampleSize;
-                            double x = pierced_cc.cx + Math.cos(angle) * center_of_circle_lies_on_rad;
-                            double y = pierced_cc.cy + Math.sin(angle) * center_of_circle_lies_on_rad;
-                            if (a.contains(x, y)) {
-                                CircleContour sample = new CircleContour(x, y, guide_rad,
-                                        thisBuildStep.recomp_data.get(0).added_curve);
-                                if (circleInArea(sample, a)) {
-                                    num_ok++;
+                double guide_rad = guideSizes.getGuideSize(thisBuildStep.recomp_data.get(0).added_curve) * radiusScale;
+                int sampleSize = (int) (Math.PI / Math.asin(guide_rad / pierced_cc.radius));
+                if (sampleSize >= thisBuildStep.recomp_data.size()) {
+                    ArrayList<PiercingSample> samples = new ArrayList<PiercingSample>();
+                    for (int i = 0; i < sampleSize; i++) {
+                        double angle = i * Math.PI * 2.0 / sampleSize;
+                        double x = pierced_cc.cx + Math.cos(angle) * center_of_circle_lies_on_rad;
+                        double y = pierced_cc.cy + Math.sin(angle) * center_of_circle_lies_on_rad;
+                        samples.add(new PiercingSample(new CircleContour(x, y, guide_rad,
+                                thisBuildStep.recomp_data.get(0).added_curve), a));
+                    }
+                    a.getBounds2D(); // Area caches its bounds - do it before a is shared
+                    int num_ok = 0;
+                    for (Boolean ok : evaluate(samples)) {
+                        if (ok.booleanValue()) {
+                            num_ok++;
+                        }
+                    }
+                    if (num_ok >= thisBuildStep.recomp_data.size()) {
+                        if (num_ok == sampleSize) {
+                            // all OK.
+                            for (int i = 0; i < thisBuildStep.recomp_data.size(); i++) {
+                                double angle = 0.0 + i * Math.PI * 2.0 / thisBuildStep.recomp_data.size();
+                                double x = pierced_cc.cx + Math.cos(angle) * center_of_circle_lies_on_rad;
+                                double y = pierced_cc.cy + Math.sin(angle) * center_of_circle_lies_on_rad;
+                                if (a.contains(x, y)) {
+                                    AbstractCurve added_curve = thisBuildStep.recomp_data.get(i).added_curve;
+                                    CircleContour c = new CircleContour(x, y, guide_rad, added_curve);
+                                    abr0 = thisBuildStep.recomp_data.get(i).split_zones.get(0);
+                                    abr1 = thisBuildStep.recomp_data.get(i).split_zones.get(1);
+
+                                    abstractToConcreteContourMap.put(added_curve, c);
+                                    addCircle(c);
                                 }
                             }
-                        }
-                        if (num_ok >= thisBuildStep.recomp_data.size()) {
-                            if (num_ok == sampleSize) {
-                                // all OK.
-                                for (int i = 0; i < thisBuildStep.recomp_data.size(); i++) {
-                                    double angle = 0.0 + i * Math.PI * 2.0 / thisBuildStep.recomp_data.size();
-                                    double x = pierced_cc.cx + Math.cos(angle) * center_of_circle_lies_on_rad;
-                                    double y = pierced_cc.cy + Math.sin(angle) * center_of_circle_lies_on_rad;
-                                    if (a.contains(x, y)) {
-                                        AbstractCurve added_curve = thisBuildStep.recomp_data.get(i).added_curve;
-                                        CircleContour c = new CircleContour(x, y, guide_rad, added_curve);
-                                        abr0 = thisBuildStep.recomp_data.get(i).split_zones.get(0);
-                                        abr1 = thisBuildStep.recomp_data.get(i).split_zones.get(1);
-
+                            return true;
+                        } else if (num_ok > sampleSize) {  // BUG?  Doesn't make sense
+                            num_ok = 0;
+                            for (int i = 0; i < sampleSize; i++) {
+                                double angle = 0.0 + i * Math.PI * 2.0 / sampleSize;
+                                double x = pierced_cc.cx + Math.cos(angle) * center_of_circle_lies_on_rad;
+                                double y = pierced_cc.cy + Math.sin(angle) * center_of_circle_lies_on_rad;
+                                if (a.contains(x, y)) {
+                                    AbstractCurve added_curve = thisBuildStep.recomp_data.get(i).added_curve;
+                                    CircleContour c = new CircleContour(x, y, guide_rad, added_curve);
+                                    if (circleInArea(c, a)) {
+                                        abr0 = thisBuildStep.recomp_data.get(num_ok).split_zones.get(0);
+                                        abr1 = thisBuildStep.recomp_data.get(num_ok).split_zones.get(1);
                                         abstractToConcreteContourMap.put(added_curve, c);
                                         addCircle(c);
-                                    }
-                                }
-                                thisBuildStep = thisBuildStep.next;
-                                continue stepLoop;
-                            } else if (num_ok > sampleSize) {  // BUG?  Doesn't make sense
-                                num_ok = 0;
-                                for (int i = 0; i < sampleSize; i++) {
-                                    double angle = 0.0 + i * Math.PI * 2.0 / sampleSize;
-                                    double x = pierced_cc.cx + Math.cos(angle) * center_of_circle_lies_on_rad;
-                                    double y = pierced_cc.cy + Math.sin(angle) * center_of_circle_lies_on_rad;
-                                    if (a.contains(x, y)) {
-                                        AbstractCurve added_curve = thisBuildStep.recomp_data.get(i).added_curve;
-                                        CircleContour c = new CircleContour(x, y, guide_rad, added_curve);
-                                        if (circleInArea(c, a)) {
-                                            abr0 = thisBuildStep.recomp_data.get(num_ok).split_zones.get(0);
-                                            abr1 = thisBuildStep.recomp_data.get(num_ok).split_zones.get(1);
-                                            abstractToConcreteContourMap.put(added_curve, c);
-                                            addCircle(c);
-                                            num_ok++;
-                                            if (num_ok == thisBuildStep.recomp_data.size()) {
-                                                break;
-                                            }
+                                        num_ok++;
+                                        if (num_ok == thisBuildStep.recomp_data.size()) {
+                                            break;
                                         }
                                     }
                                 }
-                                thisBuildStep = thisBuildStep.next;
-                                continue stepLoop;
                             }
+                            return true;
                         }
                     }
                 }
             }
+        }
 
-            for (RecompData rd : thisBuildStep.recomp_data) {
-                AbstractCurve ac = rd.added_curve;
-                double suggested_rad = guideSizes.getGuideSize(ac);
-                if (rd.split_zones.size() == 1) {
-                    // add a nested contour---------------------------------------------------
-                    // add a nested contour---------------------------------------------------
-                    // add a nested contour---------------------------------------------------
-
-                    // look ahead - are we going to add a piercing to this?
-                    // if so, push it to one side to make space
-                    boolean will_pierce = false;
-                    BuildStep future_bs = buildStepsHead.next;
-                    while (future_bs != null) {
-                        if (future_bs.recomp_data.get(0).split_zones.size() == 2) {
-                            AbstractBasicRegion abr0 = future_bs.recomp_data.get(0).split_zones.get(0);
-                            AbstractBasicRegion abr1 = future_bs.recomp_data.get(0).split_zones.get(1);
-                            AbstractCurve ac_future = abr0.getStraddledContour(abr1);
-                            if (ac_future == ac) {
-                                will_pierce = true;
-                                break;
-                            }
+        for (RecompData rd : thisBuildStep.recomp_data) {
+            AbstractCurve ac = rd.added_curve;
+            double suggested_rad = guideSizes.getGuideSize(ac) * radiusScale;
+            if (rd.split_zones.size() == 1) {
+                // add a nested contour---------------------------------------------------
+                // add a nested contour---------------------------------------------------
+                // add a nested contour---------------------------------------------------
+
+                // look ahead - are we going to add a piercing to this?
+                // if so, push it to one side to make space
+                boolean will_pierce = false;
+                BuildStep future_bs = buildStepsHead.next;
+                while (future_bs != null) {
+                    if (future_bs.recomp_data.get(0).split_zones.size() == 2) {
+                        AbstractBasicRegion abr0 = future_bs.recomp_data.get(0).split_zones.get(0);
+                        AbstractBasicRegion abr1 = future_bs.recomp_data.get(0).split_zones.get(1);
+                        AbstractCurve ac_future = abr0.getStraddledContour(abr1);
+                        if (ac_future == ac) {
+                            will_pierce = true;
+                            break;
                         }
-                        future_bs = future_bs.next;
                     }
+                    future_bs = future_bs.next;
+                }
 
-                    if (DEB.level > 3) {
-                        System.out.println("make a nested contour");
-                    }
-                    // make a circle inside containingCircles, outside excludingCirles.
+                if (DEB.level > 3) {
+                    System.out.println("make a nested contour");
+                }
+                // make a circle inside containingCircles, outside excludingCirles.
 
-                    AbstractBasicRegion zone = rd.split_zones.get(0);
+                AbstractBasicRegion zone = rd.split_zones.get(0);
 
-                    RecompositionStep last_step = recompSteps.get(recompSteps.size() - 1);
-                    AbstractDescription last_diag = last_step.to();
+                RecompositionStep last_step = recompSteps.get(recompSteps.size() - 1);
+                AbstractDescription last_diag = last_step.to();
 
-                    // put contour into a zone
-                    CircleContour c = findCircleContour(outerBox, smallestRadius, suggested_rad,
-                            zone, last_diag, ac, debugImageNumber);
+                // put contour into a zone
+                CircleContour c = findCircleContour(outerBox, gridSize, suggested_rad,
+                        zone, last_diag, ac, debugImageNumber);
 
-                    if (c == null) {
-                        throw new CannotDrawException("cannot place nested contour");
-                    }
+                if (c == null) {
+                    throw new CannotDrawException("cannot place nested contour");
+                }
 
-                    if (will_pierce && rd.split_zones.get(0).getNumContours() > 0) {
-                        // nudge to the left
-                        c.cx -= c.radius * 0.5;
+                if (will_pierce && rd.split_zones.get(0).getNumContours() > 0) {
+                    // nudge to the left
+                    c.cx -= c.radius * 0.5;
 
-                        ConcreteZone cz = makeConcreteZone(rd.split_zones.get(0));
-                        Area a = new Area(cz.getShape(outerBox));
-                        if (!circleInArea(c, a)) {
-                            c.cx += c.radius * 0.25;
-                            c.radius *= 0.75;
-                        }
+                    ConcreteZone cz = makeConcreteZone(rd.split_zones.get(0));
+                    if (!circleInZone(c, cz, outerBox)) {
+                        c.cx += c.radius * 0.25;
+                        c.radius *= 0.75;
                     }
-                    abstractToConcreteContourMap.put(ac, c);
-                    addCircle(c);
-                } else if (rd.split_zones.size() == 2) {
-                    // add a single piercing---------------------------------------------------
-                    // add a single piercing---------------------------------------------------
-                    // add a single piercing---------------------------------------------------
-
-                    if (DEB.level > 3) {
-                        System.out.println("make a single-piercing contour");
-                    }
-                    AbstractBasicRegion abr0 = rd.split_zones.get(0);
-                    AbstractBasicRegion abr1 = rd.split_zones.get(1);
-                    AbstractCurve c = abr0.getStraddledContour(abr1);
-                    CircleContour cc = abstractToConcreteContourMap.get(c);
-                    ConcreteZone cz0 = makeConcreteZone(abr0);
-                    ConcreteZone cz1 = makeConcreteZone(abr1);
-                    Area a = new Area(cz0.getShape(outerBox));
-
-                    DEB.show(4, a, "for single piercing first half " + debugImageNumber);
-                    DEB.show(4, new Area(cz1.getShape(outerBox)), "for single piercing second half " + debugImageNumber);
-                    a.add(cz1.getShape(outerBox));
-
-                    DEB.show(4, a, "for single piercing " + debugImageNumber);
-
-                    // We have made a piercing which is centred on the circumference of circle c.
-                    // but if the contents of rd.addedCurve are not equally balanced between
-                    // things inside c and things outside, we may end up squashing lots
-                    // into half of rd.addedCurve, leaving the other half looking empty.
-                    // See if we can nudge c outwards or inwards to accommodate
-                    // its contents.
-
-                    // iterate through zoneScores, looking for zones inside c,
-                    // then ask whether they are inside or outside cc.  If we
-                    // get a big score outside, then try to move c outwards.
-
-                    //  HashMap<AbstractBasicRegion, Double> zoneScores;
-                    double score_in_c = 0.0;
-                    double score_out_of_c = 0.0;
-
-                    double center_of_circle_lies_on_rad = cc.radius;
-                    double smallest_allowed_rad = smallestRadius;
-
-                    Set<AbstractBasicRegion> allZones = guideSizes.getScoredZones();
-                    for (AbstractBasicRegion abr : allZones) {
-                        DEB.out(1, "compare " + abr.debug() + " against " + c.debug());
-                        if (!abr.is_in(rd.added_curve)) {
-                            continue;
-                        }
-                        DEB.out(1, "OK " + abr.debug() + " is in " + c.debug() + ", so compare against " + cc.debug());
-                        if (abr.is_in(c)) {
-                            score_in_c += guideSizes.getGuideSize(abr);
-                        } else {
-                            score_out_of_c += guideSizes.getGuideSize(abr);
-                        }
+                }
+                abstractToConcreteContourMap.put(ac, c);
+                addCircle(c);
+            } else if (rd.split_zones.size() == 2) {
+                // add a single piercing---------------------------------------------------
+                // add a single piercing---------------------------------------------------
+                // add a single piercing---------------------------------------------------
+
+                if (DEB.level > 3) {
+                    System.out.println("make a single-piercing contour");
+                }
+                AbstractBasicRegion abr0 = rd.split_zones.get(0);
+                AbstractBasicRegion abr1 = rd.split_zones.get(1);
+                AbstractCurve c = abr0.getStraddledContour(abr1);
+                CircleContour cc = abstractToConcreteContourMap.get(c);
+                ConcreteZone cz0 = makeConcreteZone(abr0);
+                ConcreteZone cz1 = makeConcreteZone(abr1);
+                Area a = new Area(cz0.getShape(outerBox));
+
+                DEB.show(4, a, "for single piercing first half " + debugImageNumber);
+                DEB.show(4, new Area(cz1.getShape(outerBox)), "for single piercing second half " + debugImageNumber);
+                a.add(cz1.getShape(outerBox));
+                ConcreteZone union = ConcreteZone.commonPart(Arrays.asList(cz0, cz1));
+
+                DEB.show(4, a, "for single piercing " + debugImageNumber);
+
+                // We have made a piercing which is centred on the circumference of circle c.
+                // but if the contents of rd.addedCurve are not equally balanced between
+                // things inside c and things outside, we may end up squashing lots
+                // into half of rd.addedCurve, leaving the other half looking empty.
+                // See if we can nudge c outwards or inwards to accommodate
+                // its contents.
+
+                // iterate through zoneScores, looking for zones inside c,
+                // then ask whether they are inside or outside cc.  If we
+                // get a big score outside, then try to move c outwards.
+
+                //  HashMap<AbstractBasicRegion, Double> zoneScores;
+                double score_in_c = 0.0;
+                double score_out_of_c = 0.0;
+
+                double center_of_circle_lies_on_rad = cc.radius;
+                double smallest_allowed_rad = smallestRadius;
+
+                Set<AbstractBasicRegion> allZones = guideSizes.getScoredZones();
+                for (AbstractBasicRegion abr : allZones) {
+                    DEB.out(1, "compare " + abr.debug() + " against " + c.debug());
+                    if (!abr.is_in(rd.added_curve)) {
+                        continue;
                     }
-                    DEB.out(3, "scores for " + c + " are inside=" + score_in_c + " and outside=" + score_out_of_c);
-
-                    if (score_out_of_c > score_in_c) {
-                        double nudge = suggested_rad * 0.3;
-                        smallest_allowed_rad += nudge;
-                        center_of_circle_lies_on_rad += nudge;
-                    } else if (score_out_of_c < score_in_c) {
-                        double nudge = Math.min(suggested_rad * 0.3, (cc.radius * 2 - suggested_rad) * 0.5);
-                        smallest_allowed_rad += nudge;
-                        center_of_circle_lies_on_rad -= nudge;
+                    DEB.out(1, "OK " + abr.debug() + " is in " + c.debug() + ", so compare against " + cc.debug());
+                    if (abr.is_in(c)) {
+                        score_in_c += guideSizes.getGuideSize(abr);
+                    } else {
+                        score_out_of_c += guideSizes.getGuideSize(abr);
                     }
+                }
+                DEB.out(3, "scores for " + c + " are inside=" + score_in_c + " and outside=" + score_out_of_c);
+
+                if (score_out_of_c > score_in_c) {
+                    double nudge = suggested_rad * 0.3;
+                    smallest_allowed_rad += nudge;
+                    center_of_circle_lies_on_rad += nudge;
+                } else if (score_out_of_c < score_in_c) {
+                    double nudge = Math.min(suggested_rad * 0.3, (cc.radius * 2 - suggested_rad) * 0.5);
+                    smallest_allowed_rad += nudge;
+                    center_of_circle_lies_on_rad -= nudge;
+                }
 
-                    // now place circles around cc, checking whether they fit into a
-                    CircleContour solution = null;
-                    for (AngleIterator ai = new AngleIterator(); ai.hasNext();) {
-                        double angle = ai.nextAngle();
-                        double x = cc.cx + Math.cos(angle) * center_of_circle_lies_on_rad;
-                        double y = cc.cy + Math.sin(angle) * center_of_circle_lies_on_rad;
-                        if (a.contains(x, y)) {
-                            // how big a circle can we make?
-                            double start_rad;
-                            if (solution != null) {
-                                start_rad = solution.radius + smallestRadius;
-                            } else {
-                                start_rad = smallestRadius;
-                            }
-                            CircleContour attempt = growCircleContour(a, rd.added_curve,
-                                    x, y, suggested_rad,
-                                    start_rad,
-                                    smallest_allowed_rad);
-                            if (attempt != null) {
-                                solution = attempt;
-                                if (solution.radius == guideSizes.getGuideSize(ac)) {
-                                    break; // no need to try any more
-                                }
-                            }
-
-                        }//check that the centre is ok
-                    }// loop for different centre placement
-                    if (solution == null) // no single piercing found which was OK
-                    {
-                        throw new CannotDrawException("1-peircing no fit");
+                // now place circles around cc, checking whether they fit into a.
+                // Only centres on the arcs of the circle which lie in the
+                // union can take a circle (a circle that fits in a has its
+                // centre in a).  Grow a circle at every centre first (maybe
+                // in parallel), then pick a solution from them in order.
+                ArcIntervals arcs = ArcIntervals.inZone(union, outerBox,
+                        cc.cx, cc.cy, center_of_circle_lies_on_rad, 0.0);
+                ArrayList<PiercingCentre> centres = new ArrayList<PiercingCentre>();
+                for (AngleIterator ai = new AngleIterator(); ai.hasNext();) {
+                    double angle = ai.nextAngle();
+                    if (!arcs.contains(angle)) {
+                        continue;
+                    }
+                    double x = cc.cx + Math.cos(angle) * center_of_circle_lies_on_rad;
+                    double y = cc.cy + Math.sin(angle) * center_of_circle_lies_on_rad;
+                    centres.add(new PiercingCentre(x, y, a, union, outerBox,
+                            rd.added_curve, suggested_rad, smallestRadius));
+                }
+                a.getBounds2D(); // Area caches its bounds - do it before a is shared
+                CircleContour solution = null;
+                for (PiercingCentre pc : evaluate(centres)) {
+                    checkCancelled();
+                    // how big a circle can we make?  Each centre's circle
+                    // was grown from smallestRadius; once we have a
+                    // solution, only bigger circles are of interest, so
+                    // grow again from there unless the suggested radius
+                    // fits (which doesn't depend on where growing starts).
+                    CircleContour attempt;
+                    if (solution == null
+                            || (pc.grown != null && pc.grown.radius == suggested_rad)) {
+                        attempt = pc.grown;
                     } else {
-                        DEB.out(2, "added a single piercing labelled " + solution.ac.getLabel());
-                        abstractToConcreteContourMap.put(rd.added_curve, solution);
-                        addCircle(solution);
+                        attempt = growCircleContour(pc, solution.radius + smallestRadius);
                     }
-                } else {
-                    //double piercing
-                    AbstractBasicRegion abr0 = rd.split_zones.get(0);
-                    AbstractBasicRegion abr1 = rd.split_zones.get(1);
-                    AbstractBasicRegion abr2 = rd.split_zones.get(2);
-                    AbstractBasicRegion abr3 = rd.split_zones.get(3);
-                    AbstractCurve c1 = abr0.getStraddledContour(abr1);
-                    AbstractCurve c2 = abr0.getStraddledContour(abr2);
-                    CircleContour cc1 = abstractToConcreteContourMap.get(c1);
-                    CircleContour cc2 = abstractToConcreteContourMap.get(c2);
-
-                    double[][] intn_coords = intersctCircles(cc1.cx, cc1.cy, cc1.radius,
-                            cc2.cx, cc2.cy, cc2.radius);
-                    if (intn_coords == null) {
-                        System.out.println("double piercing on non-intersecting circles");
-                        return false;
+                    if (attempt != null) {
+                        solution = attempt;
+                        if (solution.radius == suggested_rad) {
+                            break; // no need to try any more
+                        }
                     }
 
-                    ConcreteZone cz0 = makeConcreteZone(abr0);
-                    ConcreteZone cz1 = makeConcreteZone(abr1);
-                    ConcreteZone cz2 = makeConcreteZone(abr2);
-                    ConcreteZone cz3 = makeConcreteZone(abr3);
-                    Area a = new Area(cz0.getShape(outerBox));
-                    a.add(cz1.getShape(outerBox));
-                    a.add(cz2.getShape(outerBox));
-                    a.add(cz3.getShape(outerBox));
-
-                    DEB.show(4, a, "for double piercing " + debugImageNumber);
-
-                    double cx, cy;
-                    if (a.contains(intn_coords[0][0], intn_coords[0][1])) {
-                        if (DEB.level > 2) {
-                            System.out.println("intn at (" + intn_coords[0][0] + "," + intn_coords[0][1] + ")");
-                        }
-                        cx = intn_coords[0][0];
-                        cy = intn_coords[0][1];
-                    } else if (a.contains(intn_coords[1][0], intn_coords[1][1])) {
-                        if (DEB.level > 2) {
-                            System.out.println("intn at (" + intn_coords[1][0] + "," + intn_coords[1][1] + ")");
-                        }
-                        cx = intn_coords[1][0];
-                        cy = intn_coords[1][1];
-                    } else {
-                        if (DEB.level > 2) {
-                            System.out.println("no suitable intn for double piercing");
-                        }
-                        throw new CannotDrawException("2peircing + disjoint");
+                }// loop for different centre placement
+                if (solution == null && adaptiveAngles) {
+                    // None of the fixed angles worked.  Try the point with
+                    // most room on the arcs where a small circle fits.
+                    ArcIntervals roomy = ArcIntervals.inZone(union, outerBox,
+                            cc.cx, cc.cy, center_of_circle_lies_on_rad, 2 * smallestRadius);
+                    double angle = roomy.roomiestAngle(union, outerBox, 8);
+                    if (!Double.isNaN(angle)) {
+                        PiercingCentre pc = new PiercingCentre(
+                                cc.cx + Math.cos(angle) * center_of_circle_lies_on_rad,
+                                cc.cy + Math.sin(angle) * center_of_circle_lies_on_rad,
+                                a, union, outerBox,
+                                rd.added_curve, suggested_rad, smallestRadius);
+                        solution = pc.call().grown;
                     }
+                }
+                if (solution == null) // no single piercing found which was OK
+                {
+                    throw new CannotDrawException("1-peircing no fit");
+                } else {
+                    DEB.out(2, "added a single piercing labelled " + solution.ac.getLabel());
+                    abstractToConcreteContourMap.put(rd.added_curve, solution);
+                    addCircle(solution);
+                }
+            } else {
+                //double piercing
+                AbstractBasicRegion abr0 = rd.split_zones.get(0);
+                AbstractBasicRegion abr1 = rd.split_zones.get(1);
+                AbstractBasicRegion abr2 = rd.split_zones.get(2);
+                AbstractBasicRegion abr3 = rd.split_zones.get(3);
+                AbstractCurve c1 = abr0.getStraddledContour(abr1);
+                AbstractCurve c2 = abr0.getStraddledContour(abr2);
+                CircleContour cc1 = abstractToConcreteContourMap.get(c1);
+                CircleContour cc2 = abstractToConcreteContourMap.get(c2);
+
+                double[][] intn_coords = intersctCircles(cc1.cx, cc1.cy, cc1.radius,
+                        cc2.cx, cc2.cy, cc2.radius);
+                if (intn_coords == null) {
+                    System.out.println("double piercing on non-intersecting circles");
+                    return false;
+                }
 
-                    CircleContour solution = growCircleContour(a, rd.added_curve, cx, cy,
-                            suggested_rad, smallestRadius, smallestRadius);
-                    if (solution == null) // no double piercing found which was OK
-                    {
-                        throw new CannotDrawException("2peircing no fit");
-                    } else {
-                        DEB.out(2, "added a double piercing labelled " + solution.ac.getLabel());
-                        abstractToConcreteContourMap.put(rd.added_curve, solution);
-                        addCircle(solution);
+                ConcreteZone cz0 = makeConcreteZone(abr0);
+                ConcreteZone cz1 = makeConcreteZone(abr1);
+                ConcreteZone cz2 = makeConcreteZone(abr2);
+                ConcreteZone cz3 = makeConcreteZone(abr3);
+                Area a = new Area(cz0.getShape(outerBox));
+                a.add(cz1.getShape(outerBox));
+                a.add(cz2.getShape(outerBox));
+                a.add(cz3.getShape(outerBox));
+                ConcreteZone union = ConcreteZone.commonPart(Arrays.asList(cz0, cz1, cz2, cz3));
+
+                DEB.show(4, a, "for double piercing " + debugImageNumber);
+
+                double cx, cy;
+                if (a.contains(intn_coords[0][0], intn_coords[0][1])) {
+                    if (DEB.level > 2) {
+                        System.out.println("intn at (" + intn_coords[0][0] + "," + intn_coords[0][1] + ")");
+                    }
+                    cx = intn_coords[0][0];
+                    cy = intn_coords[0][1];
+                } else if (a.contains(intn_coords[1][0], intn_coords[1][1])) {
+                    if (DEB.level > 2) {
+                        System.out.println("intn at (" + intn_coords[1][0] + "," + intn_coords[1][1] + ")");
                     }
-                }// if/else/else about piercing type
-            }// next RecompData in the BuildStep
-            thisBuildStep = thisBuildStep.next;
-        }// go to next BuildStep
+                    cx = intn_coords[1][0];
+                    cy = intn_coords[1][1];
+                } else {
+                    if (DEB.level > 2) {
+                        System.out.println("no suitable intn for double piercing");
+                    }
+                    throw new CannotDrawException("2peircing + disjoint");
+                }
 
+                CircleContour solution = growCircleContour(a, union, outerBox,
+                        rd.added_curve, cx, cy,
+                        suggested_rad, smallestRadius, smallestRadius);
+                if (solution == null) // no double piercing found which was OK
+                {
+                    throw new CannotDrawException("2peircing no fit");
+                } else {
+                    DEB.out(2, "added a double piercing labelled " + solution.ac.getLabel());
+                    abstractToConcreteContourMap.put(rd.added_curve, solution);
+                    addCircle(solution);
+                }
+            }// if/else/else about piercing type
+        }// next RecompData in the BuildStep
         return true;
     }
 
@@ -1261,7 +1992,14 @@ public class DiagramCreator {
      * Determine a largish radius for a circle centered at given cx, cy
      * which fits inside area a.  Return a CircleContour with this
      * centre, radius and labelled according to the AbstractCurve.
+     * 
+     * a is the union of some zones, and union is the same region as a
+     * ConcreteZone (see ConcreteZone.commonPart).  The biggest circle which
+     * fits in union is worked out directly; a is only tested when a
+     * circle is too close to that size to be sure of the answer.
      * @param a
+     * @param union
+     * @param box the box used to bound the zones
      * @param ac
      * @param centreX
      * @param centreY
@@ -1270,34 +2008,172 @@ public class DiagramCreator {
      * @param smallestRadius
      * @return
      */
-    private CircleContour growCircleContour(Area a, AbstractCurve ac,
+    private CircleContour growCircleContour(Area a, ConcreteZone union,
+            Rectangle2D.Double box, AbstractCurve ac,
             double centreX, 
             double centreY,
             double suggestedRadius, 
             double startRadius,
             double smallestRadius) {
-        CircleContour attempt = new CircleContour(centreX, centreY, suggestedRadius, ac);
-        if (circleInArea(attempt, a)) {
-            return new CircleContour(centreX, centreY, suggestedRadius, ac);
-        }
+        return new PiercingCentre(centreX, centreY, a, union, box,
+                ac, suggestedRadius, startRadius).call().grown;
+    }
 
-        boolean ok = true;
-        double good_rad = -1.0;
-        double rad = startRadius;
-        while (ok) {
-            attempt = new CircleContour(centreX, centreY, rad, ac);
-            if (circleInArea(attempt, a)) {
+    /**
+     * As growCircleContour above, for a centre whose biggest radius has
+     * already been found, growing from startRadius.
+     */
+    private CircleContour growCircleContour(PiercingCentre pc, double startRadius) {
+        Area a = pc.a;
+        double centreX = pc.x;
+        double centreY = pc.y;
+        double suggestedRadius = pc.suggestedRadius;
+        double biggest = pc.biggest;
+        double slack = pc.slack;
+
+        if (circleInUnion(a, centreX, centreY, suggestedRadius, biggest, slack)) {
+            return new CircleContour(centreX, centreY, suggestedRadius, pc.ac);
+        }
+        if (!circleInUnion(a, centreX, centreY, startRadius, biggest, slack)) {
+            return null;
+        }
+        double good_rad = startRadius;
+        if (maximalRadii) {
+            // bisect between a radius which fits and one which doesn't
+            double bad_rad = Math.max(good_rad, Math.min(suggestedRadius, biggest + slack));
+            while (bad_rad - good_rad > radiusTolerance) {
+                double rad = (good_rad + bad_rad) * 0.5;
+                if (circleInUnion(a, centreX, centreY, rad, biggest, slack)) {
+                    good_rad = rad;
+                } else {
+                    bad_rad = rad;
+                }
+            }
+        } else {
+            double rad = startRadius * 1.5;
+            while (circleInUnion(a, centreX, centreY, rad, biggest, slack)) {
                 good_rad = rad;
                 rad *= 1.5;
+            }// loop for increasing radii
+        }
+        return new CircleContour(centreX, centreY, good_rad, pc.ac);
+    }
+
+    /**
+     * A possible centre for a piercing circle.  Calling it works out
+     * how big a circle could go there, and grows a circle there from
+     * startRadius (Area tests and all).  It only reads the shared
+     * geometry, so many of these can be evaluated at once.
+     */
+    private class PiercingCentre implements Callable<PiercingCentre> {
+        final double x;
+        final double y;
+        final Area a;
+        final ConcreteZone union;
+        final Rectangle2D.Double box;
+        final AbstractCurve ac;
+        final double suggestedRadius;
+        final double startRadius;
+        // the biggest radius which fits, and how far Area tests may disagree
+        double biggest;
+        double slack;
+        // the circle grown from startRadius, or null if none fits
+        CircleContour grown;
+
+        PiercingCentre(double x, double y, Area a, ConcreteZone union,
+                Rectangle2D.Double box, AbstractCurve ac,
+                double suggestedRadius, double startRadius) {
+            this.x = x;
+            this.y = y;
+            this.a = a;
+            this.union = union;
+            this.box = box;
+            this.ac = ac;
+            this.suggestedRadius = suggestedRadius;
+            this.startRadius = startRadius;
+        }
+
+        public PiercingCentre call() {
+            biggest = union.largestCircleRadius(box, x, y) - smallestRadius;
+            slack = areaSlack * (union.largestContourRadius()
+                    + Math.abs(biggest) + smallestRadius);
+            grown = growCircleContour(this, startRadius);
+            return this;
+        }
+    }
+
+    /**
+     * Check whether a sample circle for a multiple piercing has its
+     * centre in, and fits inside, the area being pierced.
+     */
+    private static class PiercingSample implements Callable<Boolean> {
+        final CircleContour sample;
+        final Area a;
+
+        PiercingSample(CircleContour sample, Area a) {
+            this.sample = sample;
+            this.a = a;
+        }
+
+        public Boolean call() {
+            return Boolean.valueOf(a.contains(sample.cx, sample.cy)
+                    && circleInArea(sample, a));
+        }
+    }
+
+    /**
+     * Evaluate some independent candidates, using the executor if we have
+     * one, and return their results in the same order as the candidates.
+     * The candidates must only read the geometry they share.
+     * @param candidates
+     * @return
+     * @throws CannotDrawException if interrupted while waiting
+     */
+    private <T> ArrayList<T> evaluate(List<? extends Callable<T>> candidates)
+            throws CannotDrawException {
+        ArrayList<T> results = new ArrayList<T>(candidates.size());
+        try {
+            if (executor == null || candidates.size() < 2) {
+                for (Callable<T> c : candidates) {
+                    results.add(c.call());
+                }
             } else {
-                break;
+                for (Future<T> f : executor.invokeAll(candidates)) {
+                    results.add(f.get());
+                }
             }
-        }// loop for increasing radii
-        if (good_rad < 0.0) {
-            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CannotDrawException("interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
         }
-        CircleContour sol = new CircleContour(centreX, centreY, good_rad, ac);
-        return sol;
+        return results;
+    }
+
+    /**
+     * Does a circle of radius rad centred at (x, y) fit in a, given that
+     * biggest is the largest radius which fits exactly, and Area tests
+     * can only be trusted to agree with that to within slack?
+     */
+    private static boolean circleInUnion(Area a, double x, double y, double rad,
+            double biggest, double slack) {
+        if (rad < biggest - slack) {
+            return true;
+        } else if (rad > biggest + slack) {
+            return false;
+        }
+        return circleInArea(new CircleContour(x, y, rad, null), a);
     }
 
     /**
@@ -1332,31 +2208,6 @@ public class DiagramCreator {
         }
     }
 
-    /**
-     * Scan an array of PotentialCentres and find out whether
-     * all in a given sub-array are flagged as "ok".
-     * @param lowi
-     * @param highi
-     * @param lowj
-     * @param highj
-     * @param ok_array
-     * @param Ni
-     * @param Nj
-     * @return
-     */
-    private boolean all_ok_in(int lowi, int highi, int lowj, int highj,
-            PotentialCentre[][] ok_array, int Ni, int Nj) {
-        boolean all_ok = true;
-        for (int i = lowi; all_ok && i < highi + 1; i++) {
-            for (int j = lowj; all_ok && j < highj + 1; j++) {
-                if (i >= Ni || j >= Nj || !ok_array[i][j].ok) {
-                    all_ok = false;
-                }
-            }
-        }
-        return all_ok;
-    }
-
     private ArrayList<CircleContour> placeContours(
     		Rectangle2D.Double outerBox,
             int smallestRadius,
@@ -1460,12 +2311,14 @@ public class DiagramCreator {
         }
 
         ConcreteZone cz = makeConcreteZone(zone);
-        Area a = new Area(cz.getShape(outerBox));
+        ZoneGeometry a = cz.getGeometry(outerBox);
         if (a.isEmpty()) {
             throw new CannotDrawException("cannot put a nested contour into an empty region");
         }
 
-        DEB.show(4, a, "area for " + debugIndex);
+        if (DEB.level >= 4) {
+            DEB.show(4, a.toShape(), "area for " + debugIndex);
+        }
 
         // special case : one contour inside another with no other interference between
         // look at the final diagram - find the corresponding zone
@@ -1510,7 +2363,7 @@ public class DiagramCreator {
                         // build a co-centric contour
                         CircleContour attempt = new CircleContour(
                                 ccOutside.cx, ccOutside.cy, rad, abstractCurves.get(0));
-                        if (circleInArea(attempt, a)) {
+                        if (circleInZone(attempt, cz, outerBox)) {
                             if (rad > 2 * smallestRadius) // shrink the co-centric contour a bit
                             {
                                 attempt = new CircleContour(
@@ -1561,7 +2414,7 @@ public class DiagramCreator {
                     CircleContour attempt = new CircleContour(
                             cx, cy, max_rad - smallestRadius, abstractCurves.get(0));
                     //DEB.show(3, attempt.getBigInterior());
-                    if (circleInArea(attempt, a)) {
+                    if (circleInZone(attempt, cz, outerBox)) {
                         if (max_rad > 3 * smallestRadius) // shrink the co-centric contour a bit
                         {
                             attempt = new CircleContour(
@@ -1580,6 +2433,14 @@ public class DiagramCreator {
 
         // special case - inserting a nested contour into a part of a Venn2
 
+        if (inscribedCircles) {
+            ArrayList<CircleContour> inscribed = placeInscribedContours(
+                    cz, outerBox, smallestRadius, guideRadius, abstractCurves);
+            if (inscribed != null) {
+                result.addAll(inscribed);
+                return result;
+            }
+        }
 
         Rectangle bounds = a.getBounds();
         /*
@@ -1600,68 +2461,34 @@ public class DiagramCreator {
         // Use a grid approach to search for a space for the contour(s)
         int ni = (int) (bounds.getWidth() / smallestRadius) + 1;
         int nj = (int) (bounds.getHeight() / smallestRadius) + 1;
-        PotentialCentre contained[][] = new PotentialCentre[ni][nj];
+        OccupancyGrid contained = new OccupancyGrid(ni, nj);
         double basex = bounds.getMinX();
         double basey = bounds.getMinY();
+        contained.fill(a, basex, basey, smallestRadius);
+        checkCancelled();
         if (DEB.level > 3) {
             System.out.println("--------");
-        }
-        for (int i = 0; i < ni; i++) {
-            double cx = basex + i * smallestRadius;
-
-            for (int j = 0; j < nj; j++) {
-                double cy = basey + j * smallestRadius;
-                //System.out.println("check for ("+cx+","+cy+") in region");
-                contained[i][j] = new PotentialCentre(cx, cy, a.contains(cx, cy));
-                if (DEB.level > 3) {
-                    if (contained[i][j].ok) {
+            for (int i = 0; i < ni; i++) {
+                for (int j = 0; j < nj; j++) {
+                    if (contained.isOk(i, j)) {
                         System.out.print("o");
                     } else {
                         System.out.print("x");
                     }
                 }
-            }
-            if (DEB.level > 3) {
                 System.out.println("");
             }
-        }
-        if (DEB.level > 3) {
             System.out.println("--------");
         }
-        // look in contained[] for a large square
-
-        int corneri = -1, cornerj = -1, size = -1;
-        boolean isTall = true; // or isWide
-        for (int i = 0; i < ni; i++) {
-            for (int j = 0; j < nj; j++) {
-                // biggest possible square?
-                int max_sq = Math.min(ni - i, nj - j);
-                for (int sq = size + 1; sq < max_sq + 1; sq++) {
-                    // scan a square from i, j
-                    DEB.out(2, "look for a box from (" + i + "," + j + ") size " + sq);
-
-                    if (all_ok_in(i, i + (sq * abstractCurves.size()) + 1, j, j + sq + 1, contained, ni, nj)) {
-                        DEB.out(2, "found a wide box, corner at (" + i + "," + j + "), size " + sq);
-                        corneri = i;
-                        cornerj = j;
-                        size = sq;
-                        isTall = false;
-                    } else if (abstractCurves.size() > 1
-                            && all_ok_in(i, i + sq + 1, j, j + (sq * abstractCurves.size()) + 1, contained, ni, nj)) {
-                        DEB.out(2, "found a tall box, corner at (" + i + "," + j + "), size " + sq);
-                        corneri = i;
-                        cornerj = j;
-                        size = sq;
-                        isTall = true;
-                    } else {
-                        break; // neither wide nor tall worked - move onto next (x, y)
-                    }
-                }// loop for increasing sizes
-            }// loop for j corner
-        }// loop for i corner
+        // look in contained for a large square
+        contained.prepare();
+        OccupancyGrid.Box best = contained.findBox(abstractCurves.size());
         //System.out.println("best square is at corner ("+corneri+","+cornerj+"), of size "+size);
-        if (size > 0) {
-            PotentialCentre pc = contained[corneri][cornerj];
+        if (best != null && best.size > 0) {
+            int size = best.size;
+            boolean isTall = best.isTall;
+            double pcx = basex + best.corneri * smallestRadius;
+            double pcy = basey + best.cornerj * smallestRadius;
             double radius = size * smallestRadius * 0.5;
             double actualRad = radius;
             if (actualRad > 2 * smallestRadius) {
@@ -1671,7 +2498,7 @@ public class DiagramCreator {
             }
 
             // have size, cx, cy
-            DEB.out(2, "corner at " + pc.x + "," + pc.y + ", size " + size);
+            DEB.out(2, "corner at " + pcx + "," + pcy + ", size " + size);
 
             ArrayList<CircleContour> centredCircles = new ArrayList<CircleContour>();
 
@@ -1697,7 +2524,7 @@ public class DiagramCreator {
                 CircleContour attempt = new CircleContour(x, y,
                         Math.min(guideRadius, actualRad), ac);
                 //DEB.show(3, attempt.getBigInterior());
-                if (circleInArea(attempt, a)) {
+                if (circleInZone(attempt, cz, outerBox)) {
                     centredCircles.add(attempt);
                 } else {
                     centredCircles = null;
@@ -1711,8 +2538,8 @@ public class DiagramCreator {
 
             for (int labelIndex = 0; labelIndex < abstractCurves.size(); labelIndex++) {
                 AbstractCurve ac = abstractCurves.get(labelIndex);
-                double x = pc.x + radius;
-                double y = pc.y + radius;
+                double x = pcx + radius;
+                double y = pcy + radius;
                 if (isTall) {
                     y += 2 * radius * labelIndex;
                 } else {
@@ -1721,7 +2548,7 @@ public class DiagramCreator {
 
                 CircleContour attempt = new CircleContour(x, y,
                         Math.min(guideRadius, actualRad + smallestRadius), ac);
-                if (circleInArea(attempt, a)) {
+                if (circleInZone(attempt, cz, outerBox)) {
                     result.add(attempt);
                 } else {
                     result.add(new CircleContour(x, y, actualRad, ac));
@@ -1733,6 +2560,39 @@ public class DiagramCreator {
         }
     }
 
+    /**
+     * Put contours into a zone one at a time, each centred in the largest
+     * circle left in the zone by the ones already placed.
+     * @param cz
+     * @param outerBox
+     * @param smallestRadius the gap to leave around each contour
+     * @param guideRadius
+     * @param abstractCurves
+     * @return the contours, or null if they don't all fit
+     */
+    private ArrayList<CircleContour> placeInscribedContours(ConcreteZone cz,
+            Rectangle2D.Double outerBox,
+            int smallestRadius,
+            double guideRadius,
+            ArrayList<AbstractCurve> abstractCurves) {
+        ArrayList<CircleContour> result = new ArrayList<CircleContour>();
+        ConcreteZone space = cz;
+        for (AbstractCurve ac : abstractCurves) {
+            CircleContour biggest = InscribedCircle.find(space, outerBox, radiusTolerance);
+            if (biggest == null) {
+                return null;
+            }
+            double rad = Math.min(guideRadius, biggest.radius - smallestRadius);
+            if (rad < Math.min(guideRadius, smallestRadius * 0.5)) {
+                return null;
+            }
+            CircleContour c = new CircleContour(biggest.cx, biggest.cy, rad, ac);
+            result.add(c);
+            space = space.refine(c, false);
+        }
+        return result;
+    }
+
     /**
      * Find two points where two circles meet
      * (null if they don't, equal points if they just touch)
@@ -1783,12 +2643,28 @@ public class DiagramCreator {
      * @param a
      * @return
      */
-    private boolean circleInArea(CircleContour c, Area a) {
+    private static boolean circleInArea(CircleContour c, Area a) {
         Area test = new Area(c.getFatInterior(smallestRadius));
         test.subtract(a);
         return test.isEmpty();
     }
 
+    /**
+     * Is this circle in this zone, including some slop for a gap.
+     * Slop is smallestRadius.  Gives the same answer as circleInArea
+     * applied to the zone's shape, but uses distance checks against the
+     * zone's containing and excluding circles instead of Area operations.
+     * Unions of zones (as used for piercings) still need circleInArea.
+     * @param c
+     * @param cz
+     * @param box the box used to bound the zone's shape
+     * @return
+     */
+    private boolean circleInZone(CircleContour c, ConcreteZone cz,
+            Rectangle2D.Double box) {
+        return cz.containsCircle(box, c.cx, c.cy, c.radius + smallestRadius);
+    }
+
     /**
      * Optionally, depending on DEB.level, add a CirclesPanel displaying the
      * current circles in drawnCircles to DEB's "filmstrip".
@@ -1821,22 +2697,3 @@ public class DiagramCreator {
         DEB.addFilmStripShot(cp);
     }
 }
-/**
- * When considering a set of possible positions for a circle's centre,
- * we can build PotentialCentre objects to log considered positions and
- * whether they were OK (reklative to other circles) or not.
- * @author 
- *
- */
-class PotentialCentre {
-
-    double x;
-    double y;
-    boolean ok;
-
-    PotentialCentre(double x, double y, boolean ok) {
-        this.x = x;
-        this.y = y;
-        this.ok = ok;
-    }
-}
@@ -0,0 +1,30 @@
+package icircles.concreteDiagram;
+
+import icircles.abstractDescription.AbstractDescription;
+
+/**
+ * One item of a batch for {@link DiagramCreator#createDiagrams}: a
+ * description, and the size to draw it at.
+ */
+public class DiagramRequest {
+
+    private final AbstractDescription description;
+    private final int size;
+
+    /**
+     * @param description the description to be drawn
+     * @param size the size of its drawing panel
+     */
+    public DiagramRequest(AbstractDescription description, int size) {
+        this.description = description;
+        this.size = size;
+    }
+
+    public AbstractDescription getDescription() {
+        return description;
+    }
+
+    public int getSize() {
+        return size;
+    }
+}
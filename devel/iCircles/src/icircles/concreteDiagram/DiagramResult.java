@@ -0,0 +1,70 @@
+package icircles.concreteDiagram;
+
+import icircles.abstractDescription.AbstractDescription;
+import icircles.util.CannotDrawException;
+
+/**
+ * The outcome of drawing one description of a batch, as made by
+ * {@link DiagramCreator#createDiagrams}: either the drawn diagram, or the
+ * CannotDrawException which says why it couldn't be drawn.
+ */
+public class DiagramResult {
+
+    /**
+     * Told of each result of a batch as it is made.
+     */
+    public interface Listener {
+        void diagramDone(DiagramResult result);
+    }
+
+    private final int index;
+    private final AbstractDescription description;
+    private final int size;
+    private final ConcreteDiagram diagram;
+    private final CannotDrawException failure;
+
+    DiagramResult(int index, AbstractDescription description, int size,
+            ConcreteDiagram diagram, CannotDrawException failure) {
+        this.index = index;
+        this.description = description;
+        this.size = size;
+        this.diagram = diagram;
+        this.failure = failure;
+    }
+
+    /**
+     * @return the position of the description in the batch, counting from 0
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public AbstractDescription getDescription() {
+        return description;
+    }
+
+    /**
+     * @return the size the description was drawn at
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the drawn diagram, or null if it couldn't be drawn
+     */
+    public ConcreteDiagram getDiagram() {
+        return diagram;
+    }
+
+    /**
+     * @return why the diagram couldn't be drawn, or null if it was drawn
+     */
+    public CannotDrawException getFailure() {
+        return failure;
+    }
+
+    public boolean isDrawn() {
+        return diagram != null;
+    }
+}
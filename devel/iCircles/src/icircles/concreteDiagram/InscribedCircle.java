@@ -0,0 +1,84 @@
+package icircles.concreteDiagram;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Find the largest circle which fits inside a ConcreteZone (the "pole of
+ * inaccessibility" of the zone).  The zone's bounds are covered with square
+ * cells, and cells are split up in order of the biggest circle any point in
+ * them could possibly take.  A cell is dropped once it can't beat the best
+ * circle found so far by more than the precision asked for.
+ */
+class InscribedCircle {
+
+    private static class Cell {
+        double x;
+        double y;
+        double half; // half the side of the cell
+        double rad; // biggest circle centred at (x, y)
+        double maxRad; // biggest circle centred anywhere in the cell
+
+        Cell(double x, double y, double half, ConcreteZone zone, Rectangle2D.Double box) {
+            this.x = x;
+            this.y = y;
+            this.half = half;
+            rad = zone.largestCircleRadius(box, x, y);
+            maxRad = rad + half * Math.sqrt(2);
+        }
+    }
+
+    private static final Comparator<Cell> biggestFirst = new Comparator<Cell>() {
+        public int compare(Cell a, Cell b) {
+            return Double.compare(b.maxRad, a.maxRad);
+        }
+    };
+
+    private InscribedCircle() {
+    }
+
+    /**
+     * Find the centre and radius of the largest circle inside zone, in the
+     * sense of ConcreteZone.containsCircle.  The radius found is within
+     * precision of the largest possible.
+     * @param zone
+     * @param box the box bounding the zone
+     * @param precision a positive distance
+     * @return a circle with no AbstractCurve, or null if the zone is empty
+     */
+    static CircleContour find(ConcreteZone zone, Rectangle2D.Double box, double precision) {
+        Rectangle2D bounds = zone.getGeometry(box).getBounds2D();
+        double cellSize = Math.min(bounds.getWidth(), bounds.getHeight());
+        if (!(cellSize > 0)) {
+            return null;
+        }
+        double half = cellSize * 0.5;
+        PriorityQueue<Cell> queue = new PriorityQueue<Cell>(16, biggestFirst);
+        for (double x = bounds.getMinX(); x < bounds.getMaxX(); x += cellSize) {
+            for (double y = bounds.getMinY(); y < bounds.getMaxY(); y += cellSize) {
+                queue.add(new Cell(x + half, y + half, half, zone, box));
+            }
+        }
+        Cell best = new Cell(bounds.getCenterX(), bounds.getCenterY(), 0, zone, box);
+
+        while (!queue.isEmpty()) {
+            Cell cell = queue.poll();
+            if (cell.rad > best.rad) {
+                best = cell;
+            }
+            if (cell.maxRad - best.rad <= precision) {
+                break; // no cell left can do better by more than precision
+            }
+            half = cell.half * 0.5;
+            queue.add(new Cell(cell.x - half, cell.y - half, half, zone, box));
+            queue.add(new Cell(cell.x + half, cell.y - half, half, zone, box));
+            queue.add(new Cell(cell.x - half, cell.y + half, half, zone, box));
+            queue.add(new Cell(cell.x + half, cell.y + half, half, zone, box));
+        }
+        if (best.rad <= 0) {
+            return null;
+        }
+        return new CircleContour(best.x, best.y, best.rad, null);
+    }
+}
@@ -0,0 +1,219 @@
+package icircles.concreteDiagram;
+
+import icircles.abstractDescription.AbstractBasicRegion;
+import icircles.abstractDescription.AbstractCurve;
+import icircles.abstractDescription.AbstractDescription;
+import icircles.abstractDescription.AbstractSpider;
+import icircles.abstractDescription.CanonicalForm;
+import icircles.abstractDescription.CurveLabel;
+import icircles.abstractDescription.LayoutContext;
+import icircles.util.CannotDrawException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A cache of layouts in front of {@link DiagramCreator#createDiagram}.
+ *
+ * Layouts are kept by the {@link CanonicalForm} of their description, so a
+ * description which differs from one already laid out only in its labels
+ * (or in the order of its contours) gets the stored layout, with its
+ * contours, zones and spiders swapped for the caller's and scaled to the
+ * size asked for.  Descriptions which could not be drawn are remembered
+ * too.
+ *
+ * A hit gives the same shape as the first description laid out, which
+ * need not be exactly the shape a fresh layout would give: labels decide
+ * the order in which contours are added, and spider feet are placed at
+ * the size first asked for.
+ *
+ * The cache holds at most a given number of layouts, dropping the least
+ * recently used.  It can be shared between threads; layouts are made
+ * outside the lock.
+ * <pre>
+ * {@code
+ * LayoutCache cache  = new LayoutCache(1000);
+ * ConcreteDiagram cd = cache.createDiagram(ad, size);
+ * }
+ * </pre>
+ */
+public class LayoutCache {
+
+    /**
+     * A stored layout, or the reason there isn't one.
+     */
+    private static class StoredLayout {
+        final ConcreteDiagram diagram;
+        final String failure;
+        final List<AbstractCurve> contours;
+        final int size;
+
+        StoredLayout(ConcreteDiagram diagram, String failure, List<AbstractCurve> contours, int size) {
+            this.diagram = diagram;
+            this.failure = failure;
+            this.contours = contours;
+            this.size = size;
+        }
+    }
+
+    private final int m_max_entries;
+    private final LinkedHashMap<CanonicalForm, StoredLayout> m_entries;
+    private long m_hits = 0;
+    private long m_misses = 0;
+
+    /**
+     * @param maxEntries the most layouts to keep
+     */
+    public LayoutCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("a cache must hold at least one layout");
+        }
+        m_max_entries = maxEntries;
+        m_entries = new LinkedHashMap<CanonicalForm, StoredLayout>(16, 0.75f, true) {
+            private static final long serialVersionUID = 0L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CanonicalForm, StoredLayout> eldest) {
+                return size() > m_max_entries;
+            }
+        };
+    }
+
+    /**
+     * Draw a description, using a stored layout if there is one for a
+     * description of the same form.
+     *
+     * @param ad the description to be drawn
+     * @param size the size of the drawing panel
+     * @return the drawn diagram, or null if DiagramCreator gives null
+     * @throws CannotDrawException
+     */
+    public ConcreteDiagram createDiagram(AbstractDescription ad, int size) throws CannotDrawException {
+        CanonicalForm form = CanonicalForm.of(ad);
+        StoredLayout entry;
+        synchronized (this) {
+            entry = m_entries.get(form);
+            if (entry != null) {
+                m_hits++;
+            } else {
+                m_misses++;
+            }
+        }
+        if (entry == null) {
+            // lay out without holding the lock; if another thread got
+            // there first, both layouts are good
+            ConcreteDiagram cd = null;
+            String failure = null;
+            try {
+                cd = new DiagramCreator(ad).createDiagram(size);
+            } catch (CannotDrawException x) {
+                failure = x.message;
+            }
+            entry = new StoredLayout(cd, failure, form.getContours(), size);
+            synchronized (this) {
+                m_entries.put(form, entry);
+            }
+        }
+        if (entry.failure != null) {
+            throw new CannotDrawException(entry.failure);
+        }
+        if (entry.diagram == null) {
+            return null;
+        }
+        return entry.diagram.copy((double) size / entry.size,
+                new FormRelabelling(entry.contours, form.getContours(), ad));
+    }
+
+    /**
+     * @return the number of layouts held
+     */
+    public synchronized int size() {
+        return m_entries.size();
+    }
+
+    /**
+     * Drop all the layouts held.  The hit and miss counts are kept.
+     */
+    public synchronized void clear() {
+        m_entries.clear();
+    }
+
+    /**
+     * @return how many calls to createDiagram found a stored layout
+     */
+    public synchronized long getHits() {
+        return m_hits;
+    }
+
+    /**
+     * @return how many calls to createDiagram had to lay out the description
+     */
+    public synchronized long getMisses() {
+        return m_misses;
+    }
+
+    /**
+     * Takes the parts of a stored layout to the parts of a description of
+     * the same form: contours are matched by their place in the canonical
+     * order, and spiders by their habitats.
+     */
+    private static class FormRelabelling implements ConcreteDiagram.Relabelling {
+        private final HashMap<AbstractCurve, AbstractCurve> curves =
+                new HashMap<AbstractCurve, AbstractCurve>();
+        // The circles of a layout are for the curves of its recomposition,
+        // which are not those of the description, but carry their labels.
+        private final HashMap<CurveLabel, AbstractCurve> byLabel =
+                new HashMap<CurveLabel, AbstractCurve>();
+        private final HashMap<Set<AbstractBasicRegion>, List<AbstractSpider>> spiders =
+                new HashMap<Set<AbstractBasicRegion>, List<AbstractSpider>>();
+        private final LayoutContext context;
+
+        FormRelabelling(List<AbstractCurve> from, List<AbstractCurve> to, AbstractDescription ad) {
+            for (int i = 0; i < from.size(); i++) {
+                curves.put(from.get(i), to.get(i));
+                byLabel.put(from.get(i).getLabel(), to.get(i));
+            }
+            Iterator<AbstractBasicRegion> zIt = ad.getZoneIterator();
+            context = zIt.hasNext() ? zIt.next().getContext() : LayoutContext.getDefault();
+            Iterator<AbstractSpider> sIt = ad.getSpiderIterator();
+            while (sIt.hasNext()) {
+                AbstractSpider as = sIt.next();
+                List<AbstractSpider> sameHabitat = spiders.get(as.get_feet());
+                if (sameHabitat == null) {
+                    sameHabitat = new ArrayList<AbstractSpider>();
+                    spiders.put(as.get_feet(), sameHabitat);
+                }
+                sameHabitat.add(as);
+            }
+        }
+
+        public AbstractCurve curve(AbstractCurve ac) {
+            AbstractCurve result = curves.get(ac);
+            return result != null ? result : byLabel.get(ac.getLabel());
+        }
+
+        public AbstractBasicRegion zone(AbstractBasicRegion abr) {
+            TreeSet<AbstractCurve> in_set = new TreeSet<AbstractCurve>();
+            Iterator<AbstractCurve> acIt = abr.getContourIterator();
+            while (acIt.hasNext()) {
+                in_set.add(curve(acIt.next()));
+            }
+            return AbstractBasicRegion.get(context, in_set);
+        }
+
+        public AbstractSpider spider(AbstractSpider as) {
+            TreeSet<AbstractBasicRegion> habitat = new TreeSet<AbstractBasicRegion>();
+            for (AbstractBasicRegion foot : as.get_feet()) {
+                habitat.add(zone(foot));
+            }
+            // spiders with the same habitat are alike, so take any unused one
+            return spiders.get(habitat).remove(0);
+        }
+    }
+}
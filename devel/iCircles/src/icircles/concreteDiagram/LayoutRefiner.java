@@ -0,0 +1,342 @@
+package icircles.concreteDiagram;
+
+import icircles.util.CancellationToken;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+
+/**
+ * Improves a drawn diagram a little at a time, for as long as it is
+ * allowed to.  Circles are grown toward their guide sizes and moved away
+ * from the circles and box edges nearest them (which recentres nested
+ * circles in the room they have), and spider feet are moved away from
+ * each other and from the circles.  A change is only kept if it makes the
+ * diagram better by {@link #getQuality}, keeps every circle in the box
+ * and every foot in its zone, and neither loses a zone nor makes a new
+ * one.
+ *
+ * The diagram being refined is never changed: each round of changes
+ * which helps makes a new ConcreteDiagram, and tells the listener of it.
+ * Use {@link DiagramCreator#createDiagramAnytime} to show a diagram at
+ * once and swap in better ones as they come, or
+ * {@link DiagramCreator#createRefinedDiagram} to spend a fixed time on
+ * each diagram of a batch.
+ */
+public class LayoutRefiner {
+
+    /**
+     * Told of each better diagram as it is made.
+     */
+    public interface Listener {
+        void diagramImproved(ConcreteDiagram cd, double quality);
+    }
+
+    // how much a change must raise the quality to be worth keeping
+    private final static double minGain = 1e-6;
+    // sizes of change, as fractions of a circle's radius
+    private final static double firstStep = 0.2;
+    private final static double lastStep = 0.01;
+
+    private final ConcreteDiagram original;
+    private final Rectangle2D.Double box;
+    // the gap between circles, or between a circle and the box, beyond
+    // which a wider gap is no better
+    private final double clearance;
+
+    private final int n;
+    private final double[] cx;
+    private final double[] cy;
+    private final double[] r;
+    // the radius each circle would have at its guide size
+    private final double[] target;
+
+    private final int numFeet;
+    private final double[] fx;
+    private final double[] fy;
+    // footInside[f].get(i) if foot f is inside circle i
+    private final BitSet[] footInside;
+
+    private final HashSet<BitSet> zones;
+
+    private double quality;
+    private volatile ConcreteDiagram best;
+    private volatile double bestQuality;
+
+    /**
+     * @param cd the diagram to refine
+     * @param guideSizes the guide size of each of cd's circles, in any
+     * units, or NaN if it has none
+     */
+    LayoutRefiner(ConcreteDiagram cd, double[] guideSizes) {
+        original = cd;
+        box = cd.getBox();
+        clearance = box.width / 20;
+
+        ArrayList<CircleContour> circles = cd.getCircles();
+        n = circles.size();
+        cx = new double[n];
+        cy = new double[n];
+        r = new double[n];
+        target = new double[n];
+        // the circle nearest its guide size gives the scale for the rest
+        double scale = 0;
+        for (int i = 0; i < n; i++) {
+            CircleContour cc = circles.get(i);
+            cx[i] = cc.cx;
+            cy[i] = cc.cy;
+            r[i] = cc.radius;
+            if (guideSizes[i] > 0) {
+                scale = Math.max(scale, r[i] / guideSizes[i]);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            target[i] = guideSizes[i] > 0 ? guideSizes[i] * scale : r[i];
+        }
+
+        ArrayList<ConcreteSpiderFoot> feet = feetOf(cd);
+        numFeet = feet.size();
+        fx = new double[numFeet];
+        fy = new double[numFeet];
+        footInside = new BitSet[numFeet];
+        for (int f = 0; f < numFeet; f++) {
+            fx[f] = feet.get(f).getX();
+            fy[f] = feet.get(f).getY();
+            footInside[f] = new BitSet(n);
+            for (int i = 0; i < n; i++) {
+                if (isInside(fx[f], fy[f], i)) {
+                    footInside[f].set(i);
+                }
+            }
+        }
+
+        zones = ZoneTopology.zonesOf(cx, cy, r, n);
+        quality = measure();
+        best = cd;
+        bestQuality = quality;
+    }
+
+    private static ArrayList<ConcreteSpiderFoot> feetOf(ConcreteDiagram cd) {
+        ArrayList<ConcreteSpiderFoot> result = new ArrayList<ConcreteSpiderFoot>();
+        if (cd.getSpiders() != null) {
+            for (ConcreteSpider s : cd.getSpiders()) {
+                result.addAll(s.feet);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Keep improving the diagram until no small change helps, or token is
+     * cancelled.
+     * @param token when to stop, or null to stop only when done
+     * @param listener told of each better diagram, or null
+     * @return the best diagram made
+     */
+    public ConcreteDiagram refine(CancellationToken token, Listener listener) {
+        double step = firstStep;
+        while (step >= lastStep && (token == null || !token.isCancelled())) {
+            if (improve(step, token)) {
+                best = makeDiagram();
+                bestQuality = quality;
+                if (listener != null) {
+                    listener.diagramImproved(best, quality);
+                }
+            } else {
+                step *= 0.5;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the best diagram made so far
+     */
+    public ConcreteDiagram getDiagram() {
+        return best;
+    }
+
+    /**
+     * How good the best diagram so far is, between 0 and 1.  This is the
+     * mean of three scores, each between 0 and 1: how near the circles are
+     * to their guide sizes, how clear each circle is of the others and of
+     * the box, and how clear each spider foot is of the circles, of the
+     * other feet and of the box.  (Diagrams without spiders leave out the
+     * last.)
+     * @return the quality
+     */
+    public double getQuality() {
+        return bestQuality;
+    }
+
+    /**
+     * Try each change of the given size once.
+     * @return whether any change was kept
+     */
+    private boolean improve(double step, CancellationToken token) {
+        boolean improved = false;
+        for (int i = 0; i < n; i++) {
+            if (token != null && token.isCancelled()) {
+                return improved;
+            }
+            double d = step * r[i];
+            if (r[i] < target[i]) {
+                improved |= tryCircle(i, cx[i], cy[i], Math.min(target[i], r[i] * (1 + step)));
+            }
+            improved |= tryCircle(i, cx[i] + d, cy[i], r[i]);
+            improved |= tryCircle(i, cx[i] - d, cy[i], r[i]);
+            improved |= tryCircle(i, cx[i], cy[i] + d, r[i]);
+            improved |= tryCircle(i, cx[i], cy[i] - d, r[i]);
+        }
+        double d = step * clearance;
+        for (int f = 0; f < numFeet; f++) {
+            if (token != null && token.isCancelled()) {
+                return improved;
+            }
+            improved |= tryFoot(f, fx[f] + d, fy[f]);
+            improved |= tryFoot(f, fx[f] - d, fy[f]);
+            improved |= tryFoot(f, fx[f], fy[f] + d);
+            improved |= tryFoot(f, fx[f], fy[f] - d);
+        }
+        return improved;
+    }
+
+    private boolean tryCircle(int i, double x, double y, double rad) {
+        double oldX = cx[i];
+        double oldY = cy[i];
+        double oldR = r[i];
+        cx[i] = x;
+        cy[i] = y;
+        r[i] = rad;
+        if (gapToBox(x, y, rad) >= 0 && feetStayIn(i)) {
+            double q = measure();
+            if (q > quality + minGain && ZoneTopology.zonesOf(cx, cy, r, n).equals(zones)) {
+                quality = q;
+                return true;
+            }
+        }
+        cx[i] = oldX;
+        cy[i] = oldY;
+        r[i] = oldR;
+        return false;
+    }
+
+    private boolean tryFoot(int f, double x, double y) {
+        double oldX = fx[f];
+        double oldY = fy[f];
+        fx[f] = x;
+        fy[f] = y;
+        if (gapToBox(x, y, ConcreteSpiderFoot.FOOT_RADIUS) >= 0 && footStaysIn(f)) {
+            double q = measure();
+            if (q > quality + minGain) {
+                quality = q;
+                return true;
+            }
+        }
+        fx[f] = oldX;
+        fy[f] = oldY;
+        return false;
+    }
+
+    private boolean isInside(double x, double y, int i) {
+        double dx = x - cx[i];
+        double dy = y - cy[i];
+        return dx * dx + dy * dy < r[i] * r[i];
+    }
+
+    private boolean feetStayIn(int i) {
+        for (int f = 0; f < numFeet; f++) {
+            if (isInside(fx[f], fy[f], i) != footInside[f].get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean footStaysIn(int f) {
+        for (int i = 0; i < n; i++) {
+            if (isInside(fx[f], fy[f], i) != footInside[f].get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private double gapToBox(double x, double y, double rad) {
+        return Math.min(Math.min(x - box.x, box.x + box.width - x),
+                Math.min(y - box.y, box.y + box.height - y)) - rad;
+    }
+
+    /**
+     * The width of the thinnest part of the zones between two circles:
+     * the gap between them, the lens where they cross or the ring around
+     * one inside the other.
+     */
+    private double gapBetween(int i, int j) {
+        double dx = cx[j] - cx[i];
+        double dy = cy[j] - cy[i];
+        double d = Math.sqrt(dx * dx + dy * dy);
+        if (d >= r[i] + r[j]) {
+            return d - r[i] - r[j];
+        } else if (d <= Math.abs(r[i] - r[j])) {
+            return Math.abs(r[i] - r[j]) - d;
+        } else {
+            return Math.min(r[i] + r[j] - d, d - Math.abs(r[i] - r[j]));
+        }
+    }
+
+    private double measure() {
+        if (n == 0) {
+            return 1;
+        }
+        double sizeScore = 0;
+        double gapScore = 0;
+        for (int i = 0; i < n; i++) {
+            sizeScore += Math.min(1, r[i] / target[i]);
+            double gap = gapToBox(cx[i], cy[i], r[i]);
+            for (int j = 0; j < n; j++) {
+                if (j != i) {
+                    gap = Math.min(gap, gapBetween(i, j));
+                }
+            }
+            gapScore += Math.max(0, Math.min(1, gap / clearance));
+        }
+        if (numFeet == 0) {
+            return (sizeScore + gapScore) / (2 * n);
+        }
+        double footScore = 0;
+        double footClearance = 3 * ConcreteSpiderFoot.FOOT_RADIUS;
+        for (int f = 0; f < numFeet; f++) {
+            double gap = gapToBox(fx[f], fy[f], 0);
+            for (int i = 0; i < n; i++) {
+                double dx = fx[f] - cx[i];
+                double dy = fy[f] - cy[i];
+                gap = Math.min(gap, Math.abs(Math.sqrt(dx * dx + dy * dy) - r[i]));
+            }
+            for (int g = 0; g < numFeet; g++) {
+                if (g != f) {
+                    double dx = fx[f] - fx[g];
+                    double dy = fy[f] - fy[g];
+                    gap = Math.min(gap, 0.5 * Math.sqrt(dx * dx + dy * dy));
+                }
+            }
+            footScore += Math.max(0, Math.min(1, gap / footClearance));
+        }
+        return (sizeScore / n + gapScore / n + footScore / numFeet) / 3;
+    }
+
+    private ConcreteDiagram makeDiagram() {
+        ConcreteDiagram cd = original.copy();
+        ArrayList<CircleContour> circles = cd.getCircles();
+        for (int i = 0; i < n; i++) {
+            circles.get(i).moveTo(cx[i], cy[i], r[i]);
+        }
+        ArrayList<ConcreteSpiderFoot> feet = feetOf(cd);
+        for (int f = 0; f < numFeet; f++) {
+            feet.get(f).setX(fx[f]);
+            feet.get(f).setY(fy[f]);
+        }
+        return cd;
+    }
+}
@@ -0,0 +1,200 @@
+package icircles.concreteDiagram;
+
+import icircles.util.DEB;
+
+import java.util.Arrays;
+
+/**
+ * A grid of cells, each flagged as ok (a possible centre for a new circle)
+ * or not.  The cells can be set one by one, or from a zone using fill.
+ * Once all the cells are set, call prepare; then any rectangle of
+ * cells can be checked in constant time using a summed-area table, and
+ * findBox looks for the biggest space to put new circles in.
+ *
+ * Only fill works coarse-to-fine, in the sense that it makes fewer tests
+ * against the zone.  The grid itself is kept at full resolution over the
+ * whole of the zone's bounds, and prepare and findBox look at every cell,
+ * so memory and time still grow with the number of cells.  A coarse
+ * search would have to reproduce findBox's choice among equal boxes
+ * exactly, because the drawn layouts (and their test checksums) depend
+ * on it.
+ */
+class OccupancyGrid {
+
+    final int ni;
+    final int nj;
+
+    private final boolean[] ok;
+
+    // sums[i * (nj + 1) + j] counts the ok cells with index below (i, j)
+    private int[] sums;
+
+    // squares[i * nj + j] is the side of the biggest square of ok cells
+    // whose lowest corner is (i, j)
+    private int[] squares;
+
+    /**
+     * The place found by findBox for some circles.
+     */
+    static class Box {
+        int corneri;
+        int cornerj;
+        int size;
+        boolean isTall; // or isWide
+    }
+
+    OccupancyGrid(int ni, int nj) {
+        this.ni = ni;
+        this.nj = nj;
+        ok = new boolean[ni * nj];
+    }
+
+    void set(int i, int j, boolean value) {
+        ok[i * nj + j] = value;
+    }
+
+    boolean isOk(int i, int j) {
+        return ok[i * nj + j];
+    }
+
+    /**
+     * Flag the cells whose centres are in the zone, where the centre of
+     * cell (i, j) is (basex + i * step, basey + j * step).  Rather than test
+     * every centre, blocks of cells are classified against the zone's
+     * circles as a whole, and only blocks which straddle the zone's
+     * boundary are split up, down to single cells.  The flags are the same
+     * as testing each centre with a.contains.  The number of tests follows
+     * the length of the zone's boundary, but setting the cells of the
+     * blocks inside the zone still takes time for each cell.
+     * @param a
+     * @param basex
+     * @param basey
+     * @param step
+     */
+    void fill(ZoneGeometry a, double basex, double basey, double step) {
+        fillBlock(a, basex, basey, step, 0, ni, 0, nj);
+    }
+
+    private void fillBlock(ZoneGeometry a, double basex, double basey, double step,
+            int lowi, int highi, int lowj, int highj) {
+        if (lowi >= highi || lowj >= highj) {
+            return;
+        }
+        if ((highi - lowi) * (highj - lowj) <= 4) {
+            for (int i = lowi; i < highi; i++) {
+                for (int j = lowj; j < highj; j++) {
+                    set(i, j, a.contains(basex + i * step, basey + j * step));
+                }
+            }
+            return;
+        }
+        int kind = a.classify(basex + lowi * step, basey + lowj * step,
+                basex + (highi - 1) * step, basey + (highj - 1) * step);
+        if (kind == ZoneGeometry.OUTSIDE) {
+            return; // cells start off not ok
+        } else if (kind == ZoneGeometry.INSIDE) {
+            for (int i = lowi; i < highi; i++) {
+                Arrays.fill(ok, i * nj + lowj, i * nj + highj, true);
+            }
+            return;
+        }
+        int midi = (lowi + highi + 1) / 2;
+        int midj = (lowj + highj + 1) / 2;
+        fillBlock(a, basex, basey, step, lowi, midi, lowj, midj);
+        fillBlock(a, basex, basey, step, midi, highi, lowj, midj);
+        fillBlock(a, basex, basey, step, lowi, midi, midj, highj);
+        fillBlock(a, basex, basey, step, midi, highi, midj, highj);
+    }
+
+    /**
+     * Build the summed-area table and the table of squares.
+     * Call this after setting the cells and before asking about boxes.
+     */
+    void prepare() {
+        sums = new int[(ni + 1) * (nj + 1)];
+        for (int i = 0; i < ni; i++) {
+            int rowSum = 0;
+            for (int j = 0; j < nj; j++) {
+                if (ok[i * nj + j]) {
+                    rowSum++;
+                }
+                sums[(i + 1) * (nj + 1) + j + 1] = sums[i * (nj + 1) + j + 1] + rowSum;
+            }
+        }
+        squares = new int[ni * nj];
+        for (int i = ni - 1; i >= 0; i--) {
+            for (int j = nj - 1; j >= 0; j--) {
+                if (!ok[i * nj + j]) {
+                    continue;
+                }
+                int side = 0;
+                if (i + 1 < ni && j + 1 < nj) {
+                    side = Math.min(squares[(i + 1) * nj + j],
+                            Math.min(squares[i * nj + j + 1], squares[(i + 1) * nj + j + 1]));
+                }
+                squares[i * nj + j] = side + 1;
+            }
+        }
+    }
+
+    /**
+     * Are all the cells from (lowi, lowj) to (highi, highj) inclusive ok?
+     * Cells off the grid are not ok.
+     */
+    boolean allOk(int lowi, int highi, int lowj, int highj) {
+        if (highi >= ni || highj >= nj) {
+            return false;
+        }
+        int count = (highi - lowi + 1) * (highj - lowj + 1);
+        int w = nj + 1;
+        int sum = sums[(highi + 1) * w + highj + 1] - sums[lowi * w + highj + 1]
+                - sums[(highi + 1) * w + lowj] + sums[lowi * w + lowj];
+        return sum == count;
+    }
+
+    /**
+     * Look for the biggest box of ok cells which can hold numCircles
+     * squares of the same size side by side, either in a row (wide)
+     * or in a column (tall), with a border of one cell.  Of boxes with
+     * the biggest size, the first found scanning from the lowest corner
+     * wins, and a wide box is preferred to a tall one.
+     * @param numCircles
+     * @return the box, or null if there is none
+     */
+    Box findBox(int numCircles) {
+        Box result = null;
+        int size = -1;
+        for (int i = 0; i < ni; i++) {
+            for (int j = 0; j < nj; j++) {
+                // Wide and tall boxes bigger than size both contain a
+                // square of side size + 3 from (i, j).
+                if (squares[i * nj + j] < size + 3) {
+                    continue;
+                }
+                int max_sq = Math.min(ni - i, nj - j);
+                for (int sq = size + 1; sq < max_sq + 1; sq++) {
+                    boolean isTall;
+                    if (allOk(i, i + (sq * numCircles) + 1, j, j + sq + 1)) {
+                        DEB.out(2, "found a wide box, corner at (" + i + "," + j + "), size " + sq);
+                        isTall = false;
+                    } else if (numCircles > 1
+                            && allOk(i, i + sq + 1, j, j + (sq * numCircles) + 1)) {
+                        DEB.out(2, "found a tall box, corner at (" + i + "," + j + "), size " + sq);
+                        isTall = true;
+                    } else {
+                        break; // neither wide nor tall worked - move onto next (x, y)
+                    }
+                    if (result == null) {
+                        result = new Box();
+                    }
+                    result.corneri = i;
+                    result.cornerj = j;
+                    result.size = sq;
+                    result.isTall = isTall;
+                    size = sq;
+                }// loop for increasing sizes
+            }// loop for j corner
+        }// loop for i corner
+        return result;
+    }
+}
@@ -0,0 +1,690 @@
+package icircles.concreteDiagram;
+
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The exact geometry of a ConcreteZone.  A zone is the part of a box which
+ * is inside some circles and outside others.  Rather than flattening the
+ * circles into java.awt.geom.Area objects and combining those, we keep the
+ * zone boundary as a list of circular arcs (between circle-circle
+ * intersection points) and straight pieces of the box edge.
+ *
+ * Containment, bounds and area are computed directly from the circles and
+ * the boundary pieces.  A java.awt.Shape is only built when the GUI or SVG
+ * layer asks for one (see toShape).
+ */
+public class ZoneGeometry {
+
+    // The constraint circles.  A point in the zone is inside circle i
+    // if inside[i], and outside circle i otherwise.
+    private double[] cx;
+    private double[] cy;
+    private double[] r;
+    private boolean[] inside;
+    private int numCircles;
+
+    private Rectangle2D.Double box;
+
+    // results of classify
+    public static final int OUTSIDE = 0;
+    public static final int INSIDE = 1;
+    public static final int MIXED = 2;
+
+    // The boundary of the zone, oriented so that the zone is on the left
+    // (using x right, y down, angles measured from x towards y).
+    private ArrayList<BoundaryPiece> boundary;
+
+    /**
+     * A piece of the boundary of a zone.  Either an arc of one of the
+     * constraint circles, or a straight piece of the box edge.
+     */
+    private static class BoundaryPiece {
+        boolean isArc;
+        // for arcs
+        double acx, acy, ar;
+        double fromAngle, toAngle; // toAngle < fromAngle for clockwise arcs
+        // for arcs and lines
+        double x1, y1, x2, y2;
+
+        static BoundaryPiece arc(double cx, double cy, double r,
+                double fromAngle, double toAngle) {
+            BoundaryPiece p = new BoundaryPiece();
+            p.isArc = true;
+            p.acx = cx;
+            p.acy = cy;
+            p.ar = r;
+            p.fromAngle = fromAngle;
+            p.toAngle = toAngle;
+            p.x1 = cx + r * Math.cos(fromAngle);
+            p.y1 = cy + r * Math.sin(fromAngle);
+            p.x2 = cx + r * Math.cos(toAngle);
+            p.y2 = cy + r * Math.sin(toAngle);
+            return p;
+        }
+
+        static BoundaryPiece line(double x1, double y1, double x2, double y2) {
+            BoundaryPiece p = new BoundaryPiece();
+            p.isArc = false;
+            p.x1 = x1;
+            p.y1 = y1;
+            p.x2 = x2;
+            p.y2 = y2;
+            return p;
+        }
+
+        /**
+         * The contribution of this piece to the signed area of a closed
+         * boundary (Green's theorem : half the integral of x dy - y dx).
+         */
+        double areaContribution() {
+            if (isArc) {
+                return 0.5 * (ar * ar * (toAngle - fromAngle)
+                        + ar * acx * (Math.sin(toAngle) - Math.sin(fromAngle))
+                        - ar * acy * (Math.cos(toAngle) - Math.cos(fromAngle)));
+            } else {
+                return 0.5 * (x1 * y2 - x2 * y1);
+            }
+        }
+
+        void enlarge(Rectangle2D.Double bounds) {
+            bounds.add(x1, y1);
+            bounds.add(x2, y2);
+            if (!isArc) {
+                return;
+            }
+            // include any extreme points of the circle which lie on the arc
+            double lo = Math.min(fromAngle, toAngle);
+            double hi = Math.max(fromAngle, toAngle);
+            double quarter = Math.PI * 0.5;
+            for (double a = Math.ceil(lo / quarter) * quarter; a < hi; a += quarter) {
+                bounds.add(acx + ar * Math.cos(a), acy + ar * Math.sin(a));
+            }
+        }
+
+        /**
+         * The part of this piece between parameters s0 and s1 (where 0 is
+         * the start and 1 is the end of this piece).
+         */
+        BoundaryPiece part(double s0, double s1) {
+            if (isArc) {
+                double sweep = toAngle - fromAngle;
+                return arc(acx, acy, ar, fromAngle + s0 * sweep, fromAngle + s1 * sweep);
+            } else {
+                return line(x1 + s0 * (x2 - x1), y1 + s0 * (y2 - y1),
+                        x1 + s1 * (x2 - x1), y1 + s1 * (y2 - y1));
+            }
+        }
+
+        double xAt(double s) {
+            return isArc ? acx + ar * Math.cos(fromAngle + s * (toAngle - fromAngle))
+                    : x1 + s * (x2 - x1);
+        }
+
+        double yAt(double s) {
+            return isArc ? acy + ar * Math.sin(fromAngle + s * (toAngle - fromAngle))
+                    : y1 + s * (y2 - y1);
+        }
+
+        /**
+         * Find the parameters (strictly between 0 and 1) at which this piece
+         * crosses the given circle.  Writes them into params and returns
+         * how many there are.
+         */
+        int crossings(double x, double y, double rad, double[] params) {
+            int num = 0;
+            if (isArc) {
+                double dx = x - acx;
+                double dy = y - acy;
+                double d = Math.sqrt(dx * dx + dy * dy);
+                if (d == 0 || d >= ar + rad || d <= Math.abs(ar - rad)) {
+                    return 0;
+                }
+                double base = Math.atan2(dy, dx);
+                double cosHalf = (ar * ar + d * d - rad * rad) / (2 * ar * d);
+                double half = Math.acos(Math.max(-1.0, Math.min(1.0, cosHalf)));
+                double sweep = Math.abs(toAngle - fromAngle);
+                double[] angles = {base - half, base + half};
+                for (double a : angles) {
+                    double delta = toAngle > fromAngle
+                            ? normalise(a - fromAngle) : normalise(fromAngle - a);
+                    if (delta > 0 && delta < sweep) {
+                        params[num++] = delta / sweep;
+                    }
+                }
+            } else {
+                double ex = x2 - x1;
+                double ey = y2 - y1;
+                double len2 = ex * ex + ey * ey;
+                double fx = x1 - x;
+                double fy = y1 - y;
+                double b = 2 * (fx * ex + fy * ey);
+                double c = fx * fx + fy * fy - rad * rad;
+                double disc = b * b - 4 * len2 * c;
+                if (len2 == 0 || disc <= 0) {
+                    return 0;
+                }
+                double sq = Math.sqrt(disc);
+                double t1 = (-b - sq) / (2 * len2);
+                double t2 = (-b + sq) / (2 * len2);
+                if (t1 > 0 && t1 < 1) {
+                    params[num++] = t1;
+                }
+                if (t2 > 0 && t2 < 1) {
+                    params[num++] = t2;
+                }
+            }
+            return num;
+        }
+
+        void appendTo(Path2D.Double path) {
+            if (isArc) {
+                // Arc2D measures angles anticlockwise with y pointing up,
+                // so negate our angles.
+                Arc2D.Double arc = new Arc2D.Double(acx - ar, acy - ar, 2 * ar, 2 * ar,
+                        -Math.toDegrees(fromAngle),
+                        -Math.toDegrees(toAngle - fromAngle),
+                        Arc2D.OPEN);
+                path.append(arc, true);
+            } else {
+                path.lineTo(x2, y2);
+            }
+        }
+    }
+
+    /**
+     * Build the geometry for the part of box which is inside all the
+     * containing circles and outside all the excluding circles.  As in
+     * ConcreteZone.getShape, the containing circles are enlarged and the
+     * excluding circles are shrunk by each CircleContour's nudge.
+     * @param box
+     * @param containingCircles
+     * @param excludingCircles
+     */
+    public ZoneGeometry(Rectangle2D.Double box,
+            List<CircleContour> containingCircles,
+            List<CircleContour> excludingCircles) {
+        this.box = box;
+        int n = containingCircles.size() + excludingCircles.size();
+        cx = new double[n];
+        cy = new double[n];
+        r = new double[n];
+        inside = new boolean[n];
+        numCircles = 0;
+        for (CircleContour c : containingCircles) {
+            addConstraint(c.cx, c.cy, c.radius + c.nudge, true);
+        }
+        for (CircleContour c : excludingCircles) {
+            addConstraint(c.cx, c.cy, c.radius - c.nudge, false);
+        }
+        boundary = new ArrayList<BoundaryPiece>();
+        for (int i = 0; i < numCircles; i++) {
+            addCircleBoundary(i);
+        }
+        addBoxBoundary();
+    }
+
+    private ZoneGeometry() {
+    }
+
+    /**
+     * Build the geometry of this zone with one more circle taken into account.
+     * Rather than starting again, the existing boundary is clipped by the
+     * new circle, and the parts of the new circle which lie in this zone
+     * are added.  This geometry is unchanged.
+     * @param c the new circle
+     * @param containing whether the zone is inside the new circle
+     * @return the refined geometry
+     */
+    public ZoneGeometry refine(CircleContour c, boolean containing) {
+        double rad = containing ? c.radius + c.nudge : c.radius - c.nudge;
+        if (!addsConstraint(c.cx, c.cy, rad, containing)) {
+            return this;
+        }
+        if (!boundary.isEmpty()) {
+            // does the new circle miss the zone, or contain all of it?
+            Rectangle2D bounds = getBounds2D();
+            if (containing) {
+                if (inCircle(c.cx, c.cy, rad, bounds.getMinX(), bounds.getMinY())
+                        && inCircle(c.cx, c.cy, rad, bounds.getMaxX(), bounds.getMinY())
+                        && inCircle(c.cx, c.cy, rad, bounds.getMinX(), bounds.getMaxY())
+                        && inCircle(c.cx, c.cy, rad, bounds.getMaxX(), bounds.getMaxY())) {
+                    return this;
+                }
+            } else if (!bounds.intersects(c.cx - rad, c.cy - rad, 2 * rad, 2 * rad)) {
+                return this;
+            }
+        }
+        ZoneGeometry result = new ZoneGeometry();
+        result.box = box;
+        int n = numCircles + 1;
+        result.cx = Arrays.copyOf(cx, n);
+        result.cy = Arrays.copyOf(cy, n);
+        result.r = Arrays.copyOf(r, n);
+        result.inside = Arrays.copyOf(inside, n);
+        result.numCircles = numCircles;
+        result.addConstraint(c.cx, c.cy, rad, containing);
+        int added = result.numCircles - 1;
+
+        result.boundary = new ArrayList<BoundaryPiece>();
+        double[] params = new double[4];
+        for (BoundaryPiece p : boundary) {
+            int num = p.crossings(c.cx, c.cy, result.r[added], params);
+            params[num++] = 0.0;
+            params[num++] = 1.0;
+            Arrays.sort(params, 0, num);
+            for (int k = 0; k + 1 < num; k++) {
+                double mid = (params[k] + params[k + 1]) * 0.5;
+                if (result.satisfies(added, p.xAt(mid), p.yAt(mid))) {
+                    result.boundary.add(num == 2 ? p : p.part(params[k], params[k + 1]));
+                }
+            }
+        }
+        result.addCircleBoundary(added);
+        return result;
+    }
+
+    private static boolean inCircle(double x, double y, double rad,
+            double px, double py) {
+        double dx = px - x;
+        double dy = py - y;
+        return dx * dx + dy * dy <= rad * rad;
+    }
+
+    private boolean addsConstraint(double x, double y, double rad, boolean in) {
+        if (!in && rad <= 0) {
+            return false; // excluding an empty circle excludes nothing
+        }
+        for (int i = 0; i < numCircles; i++) {
+            if (cx[i] == x && cy[i] == y && r[i] == rad && inside[i] == in) {
+                return false; // a repeated constraint adds nothing
+            }
+        }
+        return true;
+    }
+
+    private void addConstraint(double x, double y, double rad, boolean in) {
+        if (!addsConstraint(x, y, rad, in)) {
+            return;
+        }
+        cx[numCircles] = x;
+        cy[numCircles] = y;
+        r[numCircles] = Math.max(rad, 0.0);
+        inside[numCircles] = in;
+        numCircles++;
+    }
+
+    /**
+     * Does the point satisfy the constraint imposed by circle i?
+     */
+    private boolean satisfies(int i, double x, double y) {
+        double dx = x - cx[i];
+        double dy = y - cy[i];
+        double d2 = dx * dx + dy * dy;
+        double r2 = r[i] * r[i];
+        return inside[i] ? d2 <= r2 : d2 >= r2;
+    }
+
+    private boolean inBox(double x, double y) {
+        return x >= box.x && x <= box.x + box.width
+                && y >= box.y && y <= box.y + box.height;
+    }
+
+    private void addCircleBoundary(int i) {
+        if (r[i] <= 0) {
+            return;
+        }
+        double[] angles = new double[2 * numCircles + 8];
+        int numAngles = 0;
+        for (int j = 0; j < numCircles; j++) {
+            if (j == i) {
+                continue;
+            }
+            double dx = cx[j] - cx[i];
+            double dy = cy[j] - cy[i];
+            double d = Math.sqrt(dx * dx + dy * dy);
+            if (d == 0 || d >= r[i] + r[j] || d <= Math.abs(r[i] - r[j])) {
+                continue;
+            }
+            // angle of the line of centres, and half-angle subtended
+            // by the chord between intersection points
+            double base = Math.atan2(dy, dx);
+            double cosHalf = (r[i] * r[i] + d * d - r[j] * r[j]) / (2 * r[i] * d);
+            double half = Math.acos(Math.max(-1.0, Math.min(1.0, cosHalf)));
+            angles[numAngles++] = normalise(base - half);
+            angles[numAngles++] = normalise(base + half);
+        }
+        // where the circle crosses the lines through the box edges
+        double[] xs = {box.x, box.x + box.width};
+        for (double x : xs) {
+            double off = x - cx[i];
+            if (Math.abs(off) < r[i]) {
+                double a = Math.acos(off / r[i]);
+                angles[numAngles++] = normalise(a);
+                angles[numAngles++] = normalise(-a);
+            }
+        }
+        double[] ys = {box.y, box.y + box.height};
+        for (double y : ys) {
+            double off = y - cy[i];
+            if (Math.abs(off) < r[i]) {
+                double a = Math.asin(off / r[i]);
+                angles[numAngles++] = normalise(a);
+                angles[numAngles++] = normalise(Math.PI - a);
+            }
+        }
+
+        if (numAngles == 0) {
+            // the whole circle is on the boundary, or none of it is
+            if (onCircleBoundary(i, 0.0)) {
+                addArc(i, 0.0, 2 * Math.PI);
+            }
+            return;
+        }
+        Arrays.sort(angles, 0, numAngles);
+        for (int k = 0; k < numAngles; k++) {
+            double from = angles[k];
+            double to = (k + 1 < numAngles) ? angles[k + 1] : angles[0] + 2 * Math.PI;
+            if (to - from < 1e-12) {
+                continue;
+            }
+            if (onCircleBoundary(i, (from + to) * 0.5)) {
+                addArc(i, from, to);
+            }
+        }
+    }
+
+    private boolean onCircleBoundary(int i, double angle) {
+        double x = cx[i] + r[i] * Math.cos(angle);
+        double y = cy[i] + r[i] * Math.sin(angle);
+        if (!inBox(x, y)) {
+            return false;
+        }
+        for (int j = 0; j < numCircles; j++) {
+            if (j != i && !satisfies(j, x, y)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addArc(int i, double from, double to) {
+        if (inside[i]) {
+            boundary.add(BoundaryPiece.arc(cx[i], cy[i], r[i], from, to));
+        } else {
+            // holes run clockwise
+            boundary.add(BoundaryPiece.arc(cx[i], cy[i], r[i], to, from));
+        }
+    }
+
+    private void addBoxBoundary() {
+        double x0 = box.x;
+        double y0 = box.y;
+        double x1 = box.x + box.width;
+        double y1 = box.y + box.height;
+        addEdge(x0, y0, x1, y0);
+        addEdge(x1, y0, x1, y1);
+        addEdge(x1, y1, x0, y1);
+        addEdge(x0, y1, x0, y0);
+    }
+
+    private void addEdge(double xa, double ya, double xb, double yb) {
+        double ex = xb - xa;
+        double ey = yb - ya;
+        double len2 = ex * ex + ey * ey;
+        if (len2 == 0) {
+            return;
+        }
+        double[] params = new double[2 * numCircles + 2];
+        int numParams = 0;
+        params[numParams++] = 0.0;
+        params[numParams++] = 1.0;
+        for (int i = 0; i < numCircles; i++) {
+            // solve |a + t e - c|^2 = r^2 for t
+            double fx = xa - cx[i];
+            double fy = ya - cy[i];
+            double b = 2 * (fx * ex + fy * ey);
+            double c = fx * fx + fy * fy - r[i] * r[i];
+            double disc = b * b - 4 * len2 * c;
+            if (disc <= 0) {
+                continue;
+            }
+            double sq = Math.sqrt(disc);
+            double t1 = (-b - sq) / (2 * len2);
+            double t2 = (-b + sq) / (2 * len2);
+            if (t1 > 0 && t1 < 1) {
+                params[numParams++] = t1;
+            }
+            if (t2 > 0 && t2 < 1) {
+                params[numParams++] = t2;
+            }
+        }
+        Arrays.sort(params, 0, numParams);
+        for (int k = 0; k + 1 < numParams; k++) {
+            double from = params[k];
+            double to = params[k + 1];
+            if (to - from < 1e-12) {
+                continue;
+            }
+            double mid = (from + to) * 0.5;
+            double mx = xa + mid * ex;
+            double my = ya + mid * ey;
+            boolean ok = true;
+            for (int i = 0; ok && i < numCircles; i++) {
+                ok = satisfies(i, mx, my);
+            }
+            if (ok) {
+                boundary.add(BoundaryPiece.line(
+                        xa + from * ex, ya + from * ey,
+                        xa + to * ex, ya + to * ey));
+            }
+        }
+    }
+
+    private static double normalise(double angle) {
+        double twoPi = 2 * Math.PI;
+        angle = angle % twoPi;
+        if (angle < 0) {
+            angle += twoPi;
+        }
+        return angle;
+    }
+
+    /**
+     * Would building this zone with newBox give the same geometry?
+     * That is the case if the zone is bounded by its circles alone
+     * (no piece of its boundary runs along the box edge) and lies
+     * inside newBox.
+     * @param newBox
+     * @return
+     */
+    public boolean sameInBox(Rectangle2D.Double newBox) {
+        if (box.equals(newBox)) {
+            return true;
+        }
+        if (boundary.isEmpty()) {
+            return false;
+        }
+        for (BoundaryPiece p : boundary) {
+            if (!p.isArc) {
+                return false;
+            }
+        }
+        return newBox.contains(getBounds2D());
+    }
+
+    /**
+     * Is the point inside this zone?
+     * @param x
+     * @param y
+     * @return
+     */
+    public boolean contains(double x, double y) {
+        if (!inBox(x, y)) {
+            return false;
+        }
+        for (int i = 0; i < numCircles; i++) {
+            if (!satisfies(i, x, y)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Classify a rectangle (which may be a line or a point) against this
+     * zone.  INSIDE or OUTSIDE is only returned when contains would give
+     * that answer for every point of the rectangle; otherwise MIXED.
+     * @param minx
+     * @param miny
+     * @param maxx
+     * @param maxy
+     * @return INSIDE, OUTSIDE or MIXED
+     */
+    public int classify(double minx, double miny, double maxx, double maxy) {
+        if (maxx < box.x || minx > box.x + box.width
+                || maxy < box.y || miny > box.y + box.height) {
+            return OUTSIDE;
+        }
+        boolean allIn = minx >= box.x && maxx <= box.x + box.width
+                && miny >= box.y && maxy <= box.y + box.height;
+        for (int i = 0; i < numCircles; i++) {
+            double nearx = Math.max(Math.max(minx - cx[i], cx[i] - maxx), 0.0);
+            double neary = Math.max(Math.max(miny - cy[i], cy[i] - maxy), 0.0);
+            double farx = Math.max(Math.abs(cx[i] - minx), Math.abs(cx[i] - maxx));
+            double fary = Math.max(Math.abs(cy[i] - miny), Math.abs(cy[i] - maxy));
+            double near2 = nearx * nearx + neary * neary;
+            double far2 = farx * farx + fary * fary;
+            double r2 = r[i] * r[i];
+            // allow for rounding in the distances contains would compute
+            double slack = 1e-9 * (far2 + r2);
+            if (inside[i]) {
+                if (near2 > r2 + slack) {
+                    return OUTSIDE;
+                } else if (far2 > r2 - slack) {
+                    allIn = false;
+                }
+            } else {
+                if (far2 < r2 - slack) {
+                    return OUTSIDE;
+                } else if (near2 < r2 + slack) {
+                    allIn = false;
+                }
+            }
+        }
+        return allIn ? INSIDE : MIXED;
+    }
+
+    /**
+     * @return whether the zone has no interior at all.
+     */
+    public boolean isEmpty() {
+        return boundary.isEmpty() || getArea() <= 0.0;
+    }
+
+    /**
+     * @return the exact area of the zone.
+     */
+    public double getArea() {
+        double result = 0.0;
+        for (BoundaryPiece p : boundary) {
+            result += p.areaContribution();
+        }
+        return result;
+    }
+
+    /**
+     * @return the smallest rectangle containing the zone (empty if the zone is).
+     */
+    public Rectangle2D getBounds2D() {
+        if (boundary.isEmpty()) {
+            return new Rectangle2D.Double();
+        }
+        BoundaryPiece first = boundary.get(0);
+        Rectangle2D.Double result = new Rectangle2D.Double(first.x1, first.y1, 0, 0);
+        for (BoundaryPiece p : boundary) {
+            p.enlarge(result);
+        }
+        return result;
+    }
+
+    /**
+     * @return the smallest integer rectangle containing the zone.
+     */
+    public Rectangle getBounds() {
+        return getBounds2D().getBounds();
+    }
+
+    /**
+     * Build a Shape for drawing the zone.  The boundary pieces are chained
+     * into closed loops; the arcs are only approximated by curves here.
+     * @return
+     */
+    public Shape toShape() {
+        Path2D.Double path = new Path2D.Double(Path2D.WIND_EVEN_ODD);
+        int num = boundary.size();
+        boolean[] used = new boolean[num];
+        double tol = 1e-6 * Math.max(1.0, Math.max(box.width, box.height));
+        for (int start = 0; start < num; start++) {
+            if (used[start]) {
+                continue;
+            }
+            BoundaryPiece p = boundary.get(start);
+            used[start] = true;
+            path.moveTo(p.x1, p.y1);
+            p.appendTo(path);
+            while (Math.abs(p.x2 - boundary.get(start).x1) > tol
+                    || Math.abs(p.y2 - boundary.get(start).y1) > tol) {
+                int next = -1;
+                double bestDist = tol;
+                for (int k = 0; k < num; k++) {
+                    if (used[k]) {
+                        continue;
+                    }
+                    BoundaryPiece q = boundary.get(k);
+                    double dist = Math.max(Math.abs(q.x1 - p.x2), Math.abs(q.y1 - p.y2));
+                    if (dist <= bestDist) {
+                        bestDist = dist;
+                        next = k;
+                    }
+                }
+                if (next < 0) {
+                    // Couldn't close the loop (the circles are in some
+                    // degenerate arrangement) - fall back to Area operations.
+                    return makeArea();
+                }
+                used[next] = true;
+                p = boundary.get(next);
+                p.appendTo(path);
+            }
+            path.closePath();
+        }
+        return path;
+    }
+
+    /**
+     * Build the zone by combining Areas for the box and each circle.
+     * @return
+     */
+    Area makeArea() {
+        Area a = new Area(box);
+        for (int i = 0; i < numCircles; i++) {
+            Area circle = new Area(new Ellipse2D.Double(
+                    cx[i] - r[i], cy[i] - r[i], 2 * r[i], 2 * r[i]));
+            if (inside[i]) {
+                a.intersect(circle);
+            } else {
+                a.subtract(circle);
+            }
+        }
+        return a;
+    }
+}
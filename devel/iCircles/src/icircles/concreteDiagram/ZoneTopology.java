@@ -0,0 +1,109 @@
+package icircles.concreteDiagram;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+
+/**
+ * Finds which zones some circles make, without building any Areas.
+ *
+ * Each zone is named by the set of circles it is inside.  The boundary of
+ * every zone (bar the one outside all the circles) has an arc of some
+ * circle on it, and the arcs of a circle run between the points where it
+ * meets other circles.  So testing a point just inside and just outside
+ * the middle of each of these arcs finds every zone.  Zones much thinner
+ * than the offset of those points can be missed.
+ */
+class ZoneTopology {
+
+    private ZoneTopology() {
+    }
+
+    /**
+     * @param cx
+     * @param cy
+     * @param r
+     * @param n the number of circles, given by the first n entries of
+     * cx, cy and r
+     * @return the zones made by the circles, including the zone outside
+     * all of them
+     */
+    static HashSet<BitSet> zonesOf(double[] cx, double[] cy, double[] r, int n) {
+        HashSet<BitSet> result = new HashSet<BitSet>();
+        result.add(new BitSet(n));
+        double[] angles = new double[2 * n + 1];
+        for (int i = 0; i < n; i++) {
+            int numAngles = 0;
+            for (int j = 0; j < n; j++) {
+                if (j == i) {
+                    continue;
+                }
+                double dx = cx[j] - cx[i];
+                double dy = cy[j] - cy[i];
+                double d = Math.sqrt(dx * dx + dy * dy);
+                if (d >= r[i] + r[j] || d <= Math.abs(r[i] - r[j])) {
+                    continue; // the circles don't cross
+                }
+                // the crossing points are either side of the line
+                // of centres, at the angle given by the cosine rule
+                double toJ = Math.atan2(dy, dx);
+                double spread = Math.acos((r[i] * r[i] + d * d - r[j] * r[j]) / (2 * r[i] * d));
+                angles[numAngles++] = toJ - spread;
+                angles[numAngles++] = toJ + spread;
+            }
+            for (int k = 0; k < numAngles; k++) {
+                angles[k] = normalise(angles[k]);
+            }
+            Arrays.sort(angles, 0, numAngles);
+            if (numAngles == 0) {
+                angles[numAngles++] = 0;
+            }
+            angles[numAngles] = angles[0] + 2 * Math.PI;
+
+            double offset = Math.min(0.01, r[i] * 1e-4);
+            for (int k = 0; k < numAngles; k++) {
+                double mid = 0.5 * (angles[k] + angles[k + 1]);
+                double cos = Math.cos(mid);
+                double sin = Math.sin(mid);
+                result.add(zoneAt(cx, cy, r, n, i, true,
+                        cx[i] + (r[i] - offset) * cos, cy[i] + (r[i] - offset) * sin));
+                result.add(zoneAt(cx, cy, r, n, i, false,
+                        cx[i] + (r[i] + offset) * cos, cy[i] + (r[i] + offset) * sin));
+            }
+        }
+        return result;
+    }
+
+    private static double normalise(double angle) {
+        while (angle < 0) {
+            angle += 2 * Math.PI;
+        }
+        while (angle >= 2 * Math.PI) {
+            angle -= 2 * Math.PI;
+        }
+        return angle;
+    }
+
+    /**
+     * @return the circles which (x, y) is inside, where it is known to be
+     * inside circle i or not
+     */
+    private static BitSet zoneAt(double[] cx, double[] cy, double[] r, int n,
+            int i, boolean insideI, double x, double y) {
+        BitSet zone = new BitSet(n);
+        for (int k = 0; k < n; k++) {
+            boolean inside;
+            if (k == i) {
+                inside = insideI;
+            } else {
+                double dx = x - cx[k];
+                double dy = y - cy[k];
+                inside = dx * dx + dy * dy < r[k] * r[k];
+            }
+            if (inside) {
+                zone.set(k);
+            }
+        }
+        return zone;
+    }
+}
@@ -6,9 +6,7 @@ import icircles.abstractDescription.AbstractDescription;
 import icircles.util.DEB;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.TreeMap;
-import java.util.TreeSet;
 
 public class Decomposer {
 
@@ -29,21 +27,12 @@ public class Decomposer {
         }
 
         // otherwise, make a new AbstractDescription
-        TreeSet<AbstractCurve> contours = ad.getCopyOfContours();
-        contours.remove(c);
-
-        Iterator<AbstractBasicRegion> zoneIt = ad.getZoneIterator();
-        TreeSet<AbstractBasicRegion> zones = new TreeSet<AbstractBasicRegion>();
+        // (only the zones inside c move)
         TreeMap<AbstractBasicRegion, AbstractBasicRegion> zones_moved = new TreeMap<AbstractBasicRegion, AbstractBasicRegion>();
-        while (zoneIt.hasNext()) {
-            AbstractBasicRegion z = zoneIt.next();
-            AbstractBasicRegion znew = z.moveOutside(c);
-            zones.add(znew);
-            if (z != znew) {
-                zones_moved.put(z, znew);
-            }
+        for (AbstractBasicRegion z : ad.getZonesInside(c)) {
+            zones_moved.put(z, z.moveOutside(c));
         }
-        AbstractDescription target_ad = new AbstractDescription(contours, zones);
+        AbstractDescription target_ad = ad.withoutContour(c);
         DecompositionStep result = new DecompositionStep(
                 ad, target_ad, zones_moved, c);
         return result;
@@ -1,6 +1,5 @@
 package icircles.decomposition;
 
-import icircles.abstractDescription.AbstractBasicRegion;
 import icircles.abstractDescription.AbstractCurve;
 import icircles.abstractDescription.AbstractDescription;
 import icircles.util.DEB;
@@ -22,14 +21,7 @@ public class DecompositionStrategyInnermost extends DecompositionStrategy {
         Iterator<AbstractCurve> c_it = ad.getContourIterator();
         while (c_it.hasNext()) {
             AbstractCurve c = c_it.next();
-            int num_zones = 0;
-            Iterator<AbstractBasicRegion> z_it = ad.getZoneIterator();
-            while (z_it.hasNext()) {
-                AbstractBasicRegion z = z_it.next();
-                if (z.is_in(c)) {
-                    num_zones++;
-                }
-            }
+            int num_zones = ad.getNumZonesInside(c);
             if (num_zones < best_num_zones) {
                 best_num_zones = num_zones;
                 best_contour = c;
@@ -6,6 +6,7 @@ import icircles.abstractDescription.AbstractDescription;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.TreeSet;
 
 public class DecompositionStrategyPiercing extends DecompositionStrategy {
@@ -45,39 +46,17 @@ public class DecompositionStrategyPiercing extends DecompositionStrategy {
 
     private int numZonesInside(AbstractCurve ac,
             AbstractDescription ad) {
-        int nz = 0;
-
-        Iterator<AbstractBasicRegion> abrit = ad.getZoneIterator();
-        while (abrit.hasNext()) {
-            AbstractBasicRegion abr = abrit.next();
-            if (abr.is_in(ac)) {
-                nz++;
-            }
-        }
-        return nz;
+        return ad.getNumZonesInside(ac);
     }
 
     private boolean isPiercingCurve(AbstractCurve ac,
             AbstractDescription ad) {
         // every abstract basic region in ad which is in ac
         // must have a corresponding abr which is not in ac
-        Iterator<AbstractBasicRegion> abrit = ad.getZoneIterator();
-        ArrayList<AbstractBasicRegion> zonesInContour =
-                new ArrayList<AbstractBasicRegion>();
-
-        abrLoop:
-        while (abrit.hasNext()) {
-            AbstractBasicRegion abr = abrit.next();
-            if (abr.is_in(ac)) {
-                zonesInContour.add(abr);
-                // look for a partner zone
-                Iterator<AbstractBasicRegion> abrit2 = ad.getZoneIterator();
-                while (abrit2.hasNext()) {
-                    AbstractBasicRegion abr2 = abrit2.next();
-                    if (abr.getStraddledContour(abr2) == ac) {
-                        continue abrLoop;
-                    }
-                }
+        List<AbstractBasicRegion> zonesInContour = ad.getZonesInside(ac);
+        for (AbstractBasicRegion abr : zonesInContour) {
+            // look for a partner zone
+            if (ad.getNeighbour(abr, ac) == null) {
                 // never found a partner zone
                 return false;
             }
@@ -91,7 +70,7 @@ public class DecompositionStrategyPiercing extends DecompositionStrategy {
         // find the smallest zone (one in fewest contours)
         int zoneSize = Integer.MAX_VALUE;
         AbstractBasicRegion smallestZone = null;
-        abrit = zonesInContour.iterator();
+        Iterator<AbstractBasicRegion> abrit = zonesInContour.iterator();
         while (abrit.hasNext()) {
             AbstractBasicRegion abr = abrit.next();
             int numCs = abr.getNumContours();
@@ -8,7 +8,7 @@ import icircles.concreteDiagram.ConcreteSpiderLeg;
 import icircles.concreteDiagram.ConcreteZone;
 
 import java.awt.Color;
-import java.awt.geom.Area;
+import java.awt.Shape;
 import java.awt.geom.PathIterator;
 import java.io.StringWriter;
 
@@ -74,7 +74,7 @@ public class CirclesSVGGenerator {
         // Draw the shaded zones
         for(ConcreteZone z : diagram.getShadedZones()) {
             Element path = document.createElementNS(svgNS, "path");
-            path.setAttributeNS(null, "d", toSVGPath(z.getShape(diagram.getBox())));
+            path.setAttributeNS(null, "d", toSVGPath(z.getGeometry(diagram.getBox()).toShape()));
             path.setAttributeNS(null, "fill", "#cccccc"); // grey
             path.setAttributeNS(null, "z-index", Integer.toString(zOrder.SHADING.ordinal()));
 
@@ -172,12 +172,12 @@ public class CirclesSVGGenerator {
     }
 
     /**
-     * Converts an awt Area to a String representing an SVG path.
+     * Converts an awt Shape to a String representing an SVG path.
      *
-     * @param a The Area to convert to an SVG path.
-     * @returns An SVG specification of the passed in Area.
+     * @param a The Shape to convert to an SVG path.
+     * @returns An SVG specification of the passed in Shape.
      */
-    private static String toSVGPath(Area a) {
+    private static String toSVGPath(Shape a) {
         StringBuilder sb = new StringBuilder();
 
         PathIterator it = a.getPathIterator(null);
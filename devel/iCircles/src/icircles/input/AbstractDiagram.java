@@ -5,6 +5,7 @@ import icircles.abstractDescription.AbstractCurve;
 import icircles.abstractDescription.AbstractDescription;
 import icircles.abstractDescription.AbstractSpider;
 import icircles.abstractDescription.CurveLabel;
+import icircles.abstractDescription.LayoutContext;
 import icircles.util.DEB;
 
 import java.util.Arrays;
@@ -102,6 +103,18 @@ public class AbstractDiagram {
      * @return the AbstractDescription represented by this AbstractDiagram facade.
      */
     public AbstractDescription toAbstractDescription () {
+        return toAbstractDescription(LayoutContext.getDefault());
+    }
+
+    /**
+     * Creates an AbstractDescription from this AbstractDiagram, whose
+     * curves, labels and zones are made in the given context.  Descriptions
+     * made in different contexts can be laid out on different threads.
+     * 
+     * @param context
+     * @return the AbstractDescription represented by this AbstractDiagram facade.
+     */
+    public AbstractDescription toAbstractDescription (LayoutContext context) {
     	if(version != 0){
     		// We might need to change something here when the version
     		// changes.  To alert us to this, make a debug statement.
@@ -114,19 +127,19 @@ public class AbstractDiagram {
         List<AbstractSpider>     ss  = new Vector<AbstractSpider> ();
 
         for (String c : contours) {
-            cs.add(new AbstractCurve(CurveLabel.get(c)));
+            cs.add(new AbstractCurve(context, CurveLabel.get(context, c)));
         }
         
         for (Zone z : zones) {
-            zs.add(z.toAbstractBasicRegion(cs));
+            zs.add(z.toAbstractBasicRegion(context, cs));
         }
         
         for (Zone z : shadedZones) {
-            szs.add(z.toAbstractBasicRegion(cs));
+            szs.add(z.toAbstractBasicRegion(context, cs));
         }
         
         for (Spider s: spiders) {
-            ss.add(s.toAbstractSpider(cs));
+            ss.add(s.toAbstractSpider(context, cs));
         }
     
         return new AbstractDescription(cs, zs, szs, ss);
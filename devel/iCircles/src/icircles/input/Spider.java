@@ -2,6 +2,7 @@ package icircles.input;
 
 import icircles.abstractDescription.AbstractBasicRegion;
 import icircles.abstractDescription.AbstractCurve;
+import icircles.abstractDescription.LayoutContext;
 import icircles.abstractDescription.AbstractSpider;
 
 import java.util.Arrays;
@@ -33,9 +34,13 @@ public class Spider {
     }
     
     public AbstractSpider toAbstractSpider (Set <AbstractCurve> contours) {
+        return toAbstractSpider(LayoutContext.getDefault(), contours);
+    }
+
+    public AbstractSpider toAbstractSpider (LayoutContext context, Set <AbstractCurve> contours) {
         TreeSet<AbstractBasicRegion> feet = new TreeSet<AbstractBasicRegion>();
         for(Zone z : habitat) {
-            feet.add(z.toAbstractBasicRegion(contours));
+            feet.add(z.toAbstractBasicRegion(context, contours));
         }
 
         return new AbstractSpider(feet, name);
@@ -3,6 +3,7 @@ package icircles.input;
 import icircles.abstractDescription.AbstractBasicRegion;
 import icircles.abstractDescription.AbstractCurve;
 import icircles.abstractDescription.CurveLabel;
+import icircles.abstractDescription.LayoutContext;
 
 import java.util.Arrays;
 import java.util.HashSet;
@@ -34,14 +35,22 @@ public class Zone {
      * @return The AbstractBasicRegion for which this Zone is, in essence, a facade.
      */
     public AbstractBasicRegion toAbstractBasicRegion (Set <AbstractCurve> contours) {
+        return toAbstractBasicRegion(LayoutContext.getDefault(), contours);
+    }
+
+    /**
+     * As {@link #toAbstractBasicRegion(Set)}, where the contours were made in
+     * the given context.
+     */
+    public AbstractBasicRegion toAbstractBasicRegion (LayoutContext context, Set <AbstractCurve> contours) {
         Set<AbstractCurve> ts     = new TreeSet<AbstractCurve>();
         for (String label : in) {
-            CurveLabel    cl = CurveLabel.get(label);
+            CurveLabel    cl = CurveLabel.get(context, label);
             AbstractCurve ac = getAbstractCurve(contours, cl);
             ts.add(ac);
         }
         
-        return AbstractBasicRegion.get(ts);
+        return AbstractBasicRegion.get(context, ts);
     }
     
     /**
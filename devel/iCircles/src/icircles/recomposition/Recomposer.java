@@ -94,8 +94,8 @@ public class Recomposer {
                 }
             }
 
-            TreeSet<AbstractBasicRegion> new_zone_set = from.getCopyOfZones();
-            TreeSet<AbstractCurve> new_cont_set = from.getCopyOfContours();
+            ArrayList<AbstractBasicRegion> new_zone_set = new ArrayList<AbstractBasicRegion>();
+            ArrayList<AbstractCurve> new_cont_set = new ArrayList<AbstractCurve>();
             // for each cluster, make a Contour with label
             for (Cluster cluster : clusters) {
                 AbstractCurve new_cont = was_removed.clone();
@@ -114,14 +114,14 @@ public class Recomposer {
                 }
                 added_contour_data.add(new RecompData(new_cont, split_zones, added_zones));
             }
-            to = new AbstractDescription(new_cont_set, new_zone_set);
+            to = from.withAdditions(new_cont_set, new_zone_set);
 
         } else {
             from = decomp_step.to()/*.copy()*/;
 
             // make a new Abstract Description
             TreeSet<AbstractCurve> cs = new TreeSet<AbstractCurve>();
-            AbstractBasicRegion outside_zone = AbstractBasicRegion.get(cs);
+            AbstractBasicRegion outside_zone = AbstractBasicRegion.get(was_removed.getContext(), cs);
 
             ArrayList<AbstractBasicRegion> split_zone = new ArrayList<AbstractBasicRegion>();
             ArrayList<AbstractBasicRegion> added_zone = new ArrayList<AbstractBasicRegion>();
@@ -0,0 +1,63 @@
+package icircles.util;
+
+/**
+ * Tells a long piece of work, such as laying out a diagram, when to give
+ * up: either when someone calls {@link #cancel}, or when a time limit runs
+ * out.  The work checks the token from time to time and stops when it
+ * finds it cancelled, so it stops soon after, rather than at once.
+ *
+ * A token can be shared between threads, and between pieces of work which
+ * should all stop together.
+ * <pre>
+ * {@code
+ * CancellationToken budget = CancellationToken.withTimeout(500);
+ * ConcreteDiagram cd       = dc.createDiagram(size, budget);
+ * }
+ * </pre>
+ */
+public class CancellationToken {
+
+    private volatile boolean cancelled = false;
+    private final long deadline;
+    private final boolean hasDeadline;
+
+    /**
+     * Make a token which is only cancelled by {@link #cancel}.
+     */
+    public CancellationToken() {
+        deadline = 0;
+        hasDeadline = false;
+    }
+
+    private CancellationToken(long deadline) {
+        this.deadline = deadline;
+        hasDeadline = true;
+    }
+
+    /**
+     * @param millis
+     * @return a token which is cancelled once millis milliseconds have
+     * passed, or by {@link #cancel}
+     */
+    public static CancellationToken withTimeout(long millis) {
+        return new CancellationToken(System.nanoTime() + millis * 1000000L);
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return whether the work should stop
+     */
+    public boolean isCancelled() {
+        return cancelled || hasTimedOut();
+    }
+
+    /**
+     * @return whether the time limit has run out
+     */
+    public boolean hasTimedOut() {
+        return hasDeadline && System.nanoTime() - deadline >= 0;
+    }
+}
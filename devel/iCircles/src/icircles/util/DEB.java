@@ -18,11 +18,11 @@ public class DEB {
     public static int level = 0; // DO NOT CHANGE HERE - change in code with main e.g. test harness
     
     private static ArrayList<CirclesPanel> filmStripShots = new ArrayList<CirclesPanel>();
-    public static void addFilmStripShot(CirclesPanel cp)
+    public static synchronized void addFilmStripShot(CirclesPanel cp)
     {
         filmStripShots.add(cp);
     }
-    public static void showFilmStrip()
+    public static synchronized void showFilmStrip()
     {
         if(filmStripShots.size()==0)
             return;
@@ -0,0 +1,26 @@
+package icircles.util;
+
+import icircles.concreteDiagram.ConcreteDiagram;
+
+/**
+ * Thrown when laying out a diagram is stopped by its
+ * {@link CancellationToken}.  It carries the diagram as far as it got: the
+ * circles drawn so far, scaled to the size asked for.
+ */
+public class LayoutTimeoutException extends CannotDrawException {
+
+    private static final long serialVersionUID = 0L;
+    private final transient ConcreteDiagram partialDiagram;
+
+    public LayoutTimeoutException(String message, ConcreteDiagram partialDiagram) {
+        super(message);
+        this.partialDiagram = partialDiagram;
+    }
+
+    /**
+     * @return the diagram as far as it got
+     */
+    public ConcreteDiagram getPartialDiagram() {
+        return partialDiagram;
+    }
+}
@@ -0,0 +1,242 @@
+package icircles.util;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An unmodifiable set, kept in the natural order of its elements, from which
+ * new sets can be made cheaply by adding or removing an element.  The new
+ * set shares all but O(log n) of its structure with the old one (the sets
+ * are balanced trees, and only the path down to the changed element is
+ * copied), so a chain of sets each a small change from the last takes
+ * little more memory than the first.
+ *
+ * Iterates in the same order as a TreeSet of the same elements.
+ *
+ * @param <E>
+ */
+public class PersistentSortedSet<E extends Comparable<? super E>> extends AbstractSet<E> {
+
+    private static final class Node<E> {
+        final E value;
+        final Node<E> left;
+        final Node<E> right;
+        final int height;
+        final int size;
+
+        Node(E value, Node<E> left, Node<E> right) {
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            height = Math.max(height(left), height(right)) + 1;
+            size = size(left) + size(right) + 1;
+        }
+    }
+
+    private static final PersistentSortedSet<?> empty = new PersistentSortedSet<Integer>(null);
+
+    private final Node<E> root;
+
+    private PersistentSortedSet(Node<E> root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E extends Comparable<? super E>> PersistentSortedSet<E> empty() {
+        return (PersistentSortedSet<E>) empty;
+    }
+
+    /**
+     * @param elements
+     * @return a set of the given elements, or elements itself if it is
+     * already a PersistentSortedSet
+     */
+    @SuppressWarnings("unchecked")
+    public static <E extends Comparable<? super E>> PersistentSortedSet<E> of(Iterable<? extends E> elements) {
+        if (elements instanceof PersistentSortedSet) {
+            return (PersistentSortedSet<E>) elements;
+        }
+        PersistentSortedSet<E> result = empty();
+        for (E e : elements) {
+            result = result.with(e);
+        }
+        return result;
+    }
+
+    /**
+     * @param e
+     * @return this set with e added, or this set if it already contains e
+     */
+    public PersistentSortedSet<E> with(E e) {
+        Node<E> newRoot = add(root, e);
+        return newRoot == root ? this : new PersistentSortedSet<E>(newRoot);
+    }
+
+    /**
+     * @param e
+     * @return this set with e removed, or this set if it doesn't contain e
+     */
+    public PersistentSortedSet<E> without(E e) {
+        Node<E> newRoot = remove(root, e);
+        return newRoot == root ? this : new PersistentSortedSet<E>(newRoot);
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean contains(Object o) {
+        Node<E> n = root;
+        while (n != null) {
+            int comp = ((E) o).compareTo(n.value);
+            if (comp == 0) {
+                return true;
+            }
+            n = comp < 0 ? n.left : n.right;
+        }
+        return false;
+    }
+
+    /**
+     * @return the lowest element
+     * @throws NoSuchElementException if the set is empty
+     */
+    public E first() {
+        if (root == null) {
+            throw new NoSuchElementException();
+        }
+        Node<E> n = root;
+        while (n.left != null) {
+            n = n.left;
+        }
+        return n.value;
+    }
+
+    /**
+     * @return the highest element
+     * @throws NoSuchElementException if the set is empty
+     */
+    public E last() {
+        if (root == null) {
+            throw new NoSuchElementException();
+        }
+        Node<E> n = root;
+        while (n.right != null) {
+            n = n.right;
+        }
+        return n.value;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            // the nodes whose values and right subtrees are still to come
+            private final ArrayList<Node<E>> stack = new ArrayList<Node<E>>();
+            {
+                pushLeft(root);
+            }
+
+            private void pushLeft(Node<E> n) {
+                while (n != null) {
+                    stack.add(n);
+                    n = n.left;
+                }
+            }
+
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            public E next() {
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node<E> n = stack.remove(stack.size() - 1);
+                pushLeft(n.right);
+                return n.value;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private static int height(Node<?> n) {
+        return n == null ? 0 : n.height;
+    }
+
+    private static int size(Node<?> n) {
+        return n == null ? 0 : n.size;
+    }
+
+    private static <E extends Comparable<? super E>> Node<E> add(Node<E> n, E e) {
+        if (n == null) {
+            return new Node<E>(e, null, null);
+        }
+        int comp = e.compareTo(n.value);
+        if (comp == 0) {
+            return n;
+        } else if (comp < 0) {
+            Node<E> left = add(n.left, e);
+            return left == n.left ? n : balance(n.value, left, n.right);
+        } else {
+            Node<E> right = add(n.right, e);
+            return right == n.right ? n : balance(n.value, n.left, right);
+        }
+    }
+
+    private static <E extends Comparable<? super E>> Node<E> remove(Node<E> n, E e) {
+        if (n == null) {
+            return null;
+        }
+        int comp = e.compareTo(n.value);
+        if (comp < 0) {
+            Node<E> left = remove(n.left, e);
+            return left == n.left ? n : balance(n.value, left, n.right);
+        } else if (comp > 0) {
+            Node<E> right = remove(n.right, e);
+            return right == n.right ? n : balance(n.value, n.left, right);
+        } else if (n.left == null) {
+            return n.right;
+        } else if (n.right == null) {
+            return n.left;
+        }
+        // replace n's value with the lowest value on its right
+        Node<E> lowest = n.right;
+        while (lowest.left != null) {
+            lowest = lowest.left;
+        }
+        return balance(lowest.value, n.left, remove(n.right, lowest.value));
+    }
+
+    /**
+     * Make a node from value and two subtrees whose heights differ by at
+     * most two, rotating to keep the AVL balance.
+     */
+    private static <E> Node<E> balance(E value, Node<E> left, Node<E> right) {
+        int lh = height(left);
+        int rh = height(right);
+        if (lh > rh + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<E>(left.value, left.left, new Node<E>(value, left.right, right));
+            }
+            return new Node<E>(left.right.value,
+                    new Node<E>(left.value, left.left, left.right.left),
+                    new Node<E>(value, left.right.right, right));
+        } else if (rh > lh + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<E>(right.value, new Node<E>(value, left, right.left), right.right);
+            }
+            return new Node<E>(right.left.value,
+                    new Node<E>(value, left, right.left.left),
+                    new Node<E>(right.value, right.left.right, right.right));
+        }
+        return new Node<E>(value, left, right);
+    }
+}
@@ -32,6 +32,7 @@ package icircles.abstractDescription;
  * policies, either expressed or implied, of the iCircles Project.
  */
 
+import java.util.HashSet;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -89,6 +90,30 @@ public class TestAbstractBasicRegion {
         assertFalse("abr1: " + abr1.journalString() + "\nabr2: " + abr2.journalString() , abr1.equals(abr2));
     }
 
+    /**
+     * Tests that {@link AbstractBasicRegion #get} finds the same object
+     * whichever kind of Set the @link AbstractCurve objects are passed in,
+     * and that equal regions have equal hash codes.
+     *
+     * @param acs The arbitrary length (<= 20) array of arbitrary @link AbstractCurve objects generated by JCheck
+     */
+    @Test
+    @Configuration(tests=100, size=20) //limit the AbstractCurve[] to be lower than 20 elements 
+    @Generator(klass=AbstractCurve.class, generator=CustomAbstractCurveGen.class)
+    public void testGetIsHashed(AbstractCurve[] acs) {
+        TreeSet<AbstractCurve> in_set = new TreeSet<AbstractCurve>();
+        HashSet<AbstractCurve> hashed = new HashSet<AbstractCurve>();
+        for(AbstractCurve ac : acs) {
+            in_set.add(ac);
+            hashed.add(ac);
+        }
+        AbstractBasicRegion abr1 = AbstractBasicRegion.get(in_set);
+        AbstractBasicRegion abr2 = AbstractBasicRegion.get(hashed);
+
+        assertSame(abr1, abr2);
+        assertEquals(abr1.hashCode(), AbstractBasicRegion.get(new TreeSet<AbstractCurve>(hashed)).hashCode());
+    }
+
     /**
      * Test that {@link AbstractBasicRegion #moveOutside} and {@link AbstractBasicRegion #moved_in} are duals of each other.
      *
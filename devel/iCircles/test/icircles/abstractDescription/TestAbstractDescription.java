@@ -129,6 +129,39 @@ public class TestAbstractDescription {
          */
         assertEquals(zab, zab2);
     }
+
+    @Test
+    public void testNeighboursAndZonesInside()
+    {
+        AbstractCurve ca = new AbstractCurve(CurveLabel.get("a"));
+        AbstractCurve cb = new AbstractCurve(CurveLabel.get("b"));
+        TreeSet<AbstractCurve> ts = new TreeSet<AbstractCurve>();
+        AbstractBasicRegion z0 = AbstractBasicRegion.get(ts);
+        ts.add(ca);
+        AbstractBasicRegion za = AbstractBasicRegion.get(ts);
+        ts.add(cb);
+        AbstractBasicRegion zab = AbstractBasicRegion.get(ts);
+
+        // "a ab" : no zone b
+        TreeSet<AbstractBasicRegion> tsz = new TreeSet<AbstractBasicRegion>();
+        tsz.add(z0);
+        tsz.add(za);
+        tsz.add(zab);
+        AbstractDescription ad = new AbstractDescription(ts, tsz);
+
+        assertSame(za, ad.getNeighbour(z0, ca));
+        assertSame(z0, ad.getNeighbour(za, ca));
+        assertSame(zab, ad.getNeighbour(za, cb));
+        assertSame(za, ad.getNeighbour(zab, cb));
+        assertNull(ad.getNeighbour(zab, ca));
+        assertNull(ad.getNeighbour(z0, cb));
+
+        assertEquals(2, ad.getNumZonesInside(ca));
+        assertSame(za, ad.getZonesInside(ca).get(0));
+        assertSame(zab, ad.getZonesInside(ca).get(1));
+        assertEquals(1, ad.getNumZonesInside(cb));
+        assertEquals(0, ad.getNumZonesInside(new AbstractCurve(CurveLabel.get("c"))));
+    }
     /*
     // The following pre-existing system tests have not been reformulated in
     // JUnit as I cannot see where any assertions are made.
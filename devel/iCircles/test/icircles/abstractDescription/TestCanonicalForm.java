@@ -0,0 +1,82 @@
+package icircles.abstractDescription;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link CanonicalForm}.
+ */
+public class TestCanonicalForm {
+
+    /**
+     * Make a description from zones written as strings of one-letter
+     * labels, e.g. "a ab b" (the outside zone is added).
+     */
+    private static AbstractDescription describe(String zones) {
+        LayoutContext context = new LayoutContext();
+        HashMap<Character, AbstractCurve> curves = new HashMap<Character, AbstractCurve>();
+        TreeSet<AbstractBasicRegion> zs = new TreeSet<AbstractBasicRegion>();
+        zs.add(AbstractBasicRegion.get(context, new TreeSet<AbstractCurve>()));
+        for (String zone : zones.split(" ")) {
+            TreeSet<AbstractCurve> in = new TreeSet<AbstractCurve>();
+            for (char l : zone.toCharArray()) {
+                AbstractCurve c = curves.get(l);
+                if (c == null) {
+                    c = new AbstractCurve(context, CurveLabel.get(context, "" + l));
+                    curves.put(l, c);
+                }
+                in.add(c);
+            }
+            zs.add(AbstractBasicRegion.get(context, in));
+        }
+        return new AbstractDescription(new TreeSet<AbstractCurve>(curves.values()), zs);
+    }
+
+    @Test
+    public void testRelabelling() {
+        CanonicalForm f1 = CanonicalForm.of(describe("a ab"));
+        CanonicalForm f2 = CanonicalForm.of(describe("xy y"));
+        assertEquals(f1, f2);
+        assertEquals(f1.getHash(), f2.getHash());
+        assertEquals(64, f1.getHash().length());
+        // the contours correspond: the inner one comes out in the same place
+        int inner = f1.getContours().get(0).getLabel().isLabelled("b") ? 0 : 1;
+        assertTrue(f2.getContours().get(inner).getLabel().isLabelled("x"));
+
+        assertEquals(CanonicalForm.of(describe("a b c ab ac bc abc")),
+                CanonicalForm.of(describe("abc bc ac ab c b a")));
+        assertEquals(CanonicalForm.of(describe("a b ab bc c")),
+                CanonicalForm.of(describe("b c bc ab a")));
+    }
+
+    @Test
+    public void testDifferentDiagrams() {
+        assertFalse(CanonicalForm.of(describe("a b")).equals(CanonicalForm.of(describe("a ab"))));
+        assertFalse(CanonicalForm.of(describe("a b ab bc c")).equals(
+                CanonicalForm.of(describe("a b ab bc c ac"))));
+    }
+
+    @Test
+    public void testSymmetricDiagram() {
+        // all 64 zones of six contours
+        StringBuilder b = new StringBuilder();
+        String labels = "abcdef";
+        for (int mask = 1; mask < 64; mask++) {
+            for (int i = 0; i < 6; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    b.append(labels.charAt(i));
+                }
+            }
+            b.append(' ');
+        }
+        String venn = b.toString().trim();
+        assertEquals(CanonicalForm.of(describe(venn)),
+                CanonicalForm.of(describe(venn.replace('a', 'z'))));
+    }
+}
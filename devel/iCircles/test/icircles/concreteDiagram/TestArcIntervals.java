@@ -0,0 +1,70 @@
+package icircles.concreteDiagram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ArcIntervals}.
+ */
+public class TestArcIntervals {
+
+    private final Rectangle2D.Double box = new Rectangle2D.Double(-200, -200, 400, 400);
+
+    @Test
+    public void testMatchesLargestCircleRadius() {
+        Random r = new Random(4);
+        for (int n = 0; n < 100; n++) {
+            ArrayList<CircleContour> in = new ArrayList<CircleContour>();
+            ArrayList<CircleContour> out = new ArrayList<CircleContour>();
+            for (int k = r.nextInt(3); k > 0; k--) {
+                in.add(new CircleContour(r.nextInt(100) - 50, r.nextInt(100) - 50, 50 + r.nextInt(150), null));
+            }
+            for (int k = r.nextInt(4); k > 0; k--) {
+                out.add(new CircleContour(r.nextInt(200) - 100, r.nextInt(200) - 100, 10 + r.nextInt(60), null));
+            }
+            ConcreteZone zone = new ConcreteZone(null, in, out);
+            double cx = r.nextInt(100) - 50;
+            double cy = r.nextInt(100) - 50;
+            double rad = 20 + r.nextInt(200);
+            double margin = r.nextInt(3) * 10;
+            ArcIntervals arcs = ArcIntervals.inZone(zone, box, cx, cy, rad, margin);
+            for (int k = 0; k < 360; k++) {
+                double angle = Math.toRadians(k + 0.5);
+                double room = zone.largestCircleRadius(box,
+                        cx + rad * Math.cos(angle), cy + rad * Math.sin(angle));
+                if (Math.abs(room - margin) > 1e-6) {
+                    assertEquals(room >= margin, arcs.contains(angle));
+                    assertEquals(room >= margin, arcs.contains(angle - 2 * Math.PI));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRoomiestAngle() {
+        // a big circle around the origin, with a hole in it on the right
+        CircleContour outer = new CircleContour(0, 0, 180, null);
+        CircleContour hole = new CircleContour(50, 0, 30, null);
+        ArrayList<CircleContour> in = new ArrayList<CircleContour>();
+        in.add(outer);
+        ArrayList<CircleContour> out = new ArrayList<CircleContour>();
+        out.add(hole);
+        ConcreteZone zone = new ConcreteZone(null, in, out);
+
+        ArcIntervals arcs = ArcIntervals.inZone(zone, box, 0, 0, 50, 0);
+        assertFalse(arcs.contains(0));
+        assertTrue(arcs.contains(Math.PI));
+        // the point with most room is on the far side from the hole
+        double angle = arcs.roomiestAngle(zone, box, 8);
+        assertEquals(Math.PI, angle, 0.5);
+
+        assertTrue(ArcIntervals.inZone(zone, box, 0, 0, 50, 80).isEmpty());
+    }
+}
@@ -0,0 +1,79 @@
+package icircles.concreteDiagram;
+
+import static icircles.concreteDiagram.TestDatum.describe;
+import static icircles.concreteDiagram.TestData.FOUR_SET_VENN;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import icircles.util.CancellationToken;
+import icircles.util.LayoutTimeoutException;
+
+import org.junit.Test;
+
+/**
+ * Tests for stopping createDiagram with a {@link CancellationToken}.
+ */
+public class TestCancellation {
+
+    /**
+     * A token which is cancelled once it has been checked a given number
+     * of times.
+     */
+    private static class CountingToken extends CancellationToken {
+        private int checksLeft;
+
+        CountingToken(int checks) {
+            checksLeft = checks;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return checksLeft-- <= 0;
+        }
+    }
+
+    @Test
+    public void testNotCancelled() throws Exception {
+        double expected = new DiagramCreator(describe(FOUR_SET_VENN)).createDiagram(100).checksum();
+        ConcreteDiagram cd = new DiagramCreator(describe(FOUR_SET_VENN))
+                .createDiagram(100, CancellationToken.withTimeout(60000));
+        assertThat(cd.checksum(), closeTo(expected, 1e-9));
+    }
+
+    @Test
+    public void testCancelled() throws Exception {
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        try {
+            new DiagramCreator(describe(FOUR_SET_VENN)).createDiagram(100, token);
+            fail("expected LayoutTimeoutException");
+        } catch (LayoutTimeoutException x) {
+            assertThat(x.message, is("cancelled"));
+            assertThat(x.getPartialDiagram().getCircles().size(), is(0));
+        }
+        try {
+            new DiagramCreator(describe(FOUR_SET_VENN)).createDiagram(100, CancellationToken.withTimeout(0));
+            fail("expected LayoutTimeoutException");
+        } catch (LayoutTimeoutException x) {
+            assertThat(x.message, is("ran out of time"));
+        }
+    }
+
+    @Test
+    public void testPartialDiagram() throws Exception {
+        try {
+            new DiagramCreator(describe(FOUR_SET_VENN)).createDiagram(100, new CountingToken(3));
+            fail("expected LayoutTimeoutException");
+        } catch (LayoutTimeoutException x) {
+            ConcreteDiagram partial = x.getPartialDiagram();
+            int n = partial.getCircles().size();
+            assertTrue(n > 0 && n < 4);
+            for (CircleContour cc : partial.getCircles()) {
+                assertTrue(cc.getMinX() >= 0 && cc.getMaxX() <= 100);
+                assertTrue(cc.getMinY() >= 0 && cc.getMaxY() <= 100);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package icircles.concreteDiagram;
+
+import static icircles.concreteDiagram.TestDatum.describe;
+import static icircles.concreteDiagram.TestData.FOUR_SET_VENN;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for moving drawn circles with a {@link CircleOptimiser}.
+ */
+public class TestCircleOptimiser {
+
+    private static double lens(CircleContour a, CircleContour b) {
+        double d = Math.hypot(a.cx - b.cx, a.cy - b.cy);
+        double ai = Math.acos((d * d + a.radius * a.radius - b.radius * b.radius) / (2 * d * a.radius));
+        double aj = Math.acos((d * d + b.radius * b.radius - a.radius * a.radius) / (2 * d * b.radius));
+        return a.radius * a.radius * (ai - Math.sin(ai) * Math.cos(ai))
+                + b.radius * b.radius * (aj - Math.sin(aj) * Math.cos(aj));
+    }
+
+    @Test
+    public void testOverlapMovesToTarget() {
+        ArrayList<CircleContour> circles = new ArrayList<CircleContour>();
+        circles.add(new CircleContour(80, 100, 40, null));
+        circles.add(new CircleContour(140, 100, 40, null));
+        // equal circles, and a third of each inside the other
+        double[] circleScores = { 3, 3 };
+        double[][] pairScores = { { 0, 1 }, { 0, 0 } };
+        double before = lens(circles.get(0), circles.get(1));
+        double area = Math.PI * 40 * 40;
+
+        int steps = new CircleOptimiser(circles, new Rectangle2D.Double(0, 0, 200, 200),
+                circleScores, pairScores, 10).run(null);
+        assertTrue(steps > 0);
+        CircleContour a = circles.get(0);
+        CircleContour b = circles.get(1);
+        double after = lens(a, b);
+        assertTrue(Math.abs(after - area / 3) < Math.abs(before - area / 3));
+        assertThat(after, closeTo(area / 3, area / 30));
+        // still two crossing circles
+        double d = Math.hypot(a.cx - b.cx, a.cy - b.cy);
+        assertTrue(d < a.radius + b.radius && d > Math.abs(a.radius - b.radius));
+    }
+
+    @Test
+    public void testOptimiseCircles() throws Exception {
+        double byDefault = new DiagramCreator(describe(FOUR_SET_VENN)).createDiagram(200).checksum();
+        DiagramCreator dc = new DiagramCreator(describe(FOUR_SET_VENN));
+        dc.setOptimiseCircles(false);
+        assertThat(dc.createDiagram(200).checksum(), closeTo(byDefault, 1e-9));
+
+        dc = new DiagramCreator(describe(FOUR_SET_VENN));
+        dc.setOptimiseCircles(true);
+        ConcreteDiagram cd = dc.createDiagram(200);
+        assertThat(cd.getUnshadedZones().size(), is(16));
+        List<ConcreteZone> zones = new ArrayList<ConcreteZone>(cd.getShadedZones());
+        zones.addAll(cd.getUnshadedZones());
+        for (ConcreteZone z : zones) {
+            assertTrue(z.getGeometry(cd.getBox()).getArea() > 0);
+        }
+        for (CircleContour cc : cd.getCircles()) {
+            assertTrue(cc.cx - cc.radius >= 0 && cc.cx + cc.radius <= 200);
+            assertTrue(cc.cy - cc.radius >= 0 && cc.cy + cc.radius <= 200);
+        }
+    }
+}
@@ -100,6 +100,9 @@ public class TestConcreteDiagram {
         try {
             currentDiagram = dc.createDiagram(diagramSize);
             collector.checkThat("checksum", datum.expected_checksum, closeTo(currentDiagram.checksum(), 0.00001));
+            // rescaling there and back leaves the diagram as it was
+            ConcreteDiagram rescaled = currentDiagram.rescaledTo(3 * diagramSize).rescaledTo(diagramSize);
+            collector.checkThat("rescaled checksum", rescaled.checksum(), closeTo(currentDiagram.checksum(), 0.00001));
         } catch (CannotDrawException cde) {
             // The expected result of a CannotDrawException is hardcoded as 0.0
             collector.checkThat("checksum", datum.expected_checksum, is(0.0));
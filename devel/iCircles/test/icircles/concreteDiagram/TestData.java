@@ -14,6 +14,10 @@ public class TestData {
     public static final int TEST_PANEL_SIZE = 280;
     public static final boolean RANDOM_SHADING = false; // we don't have too many tests with shaded zones
     public static Font font = new Font("Helvetica", Font.BOLD,  16);
+
+    // a Venn diagram of four sets, used by tests which need a diagram
+    // that takes some work to draw
+    public static final String FOUR_SET_VENN = "a b ab c ac bc abc d ad bd abd cd acd bcd abcd";
     
     public static boolean GENERATE_ALL_TEST_DATA = true; // with "run all tests", generates text for test_data array
 
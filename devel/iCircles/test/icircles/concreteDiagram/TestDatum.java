@@ -1,5 +1,9 @@
 package icircles.concreteDiagram;
 
+import icircles.abstractDescription.AbstractDescription;
+import icircles.abstractDescription.LayoutContext;
+import icircles.input.AbstractDiagram;
+
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
@@ -12,6 +16,9 @@ import java.util.regex.Pattern;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 public class TestDatum {
 
     public String description;
@@ -29,6 +36,28 @@ public class TestDatum {
         expected_checksum = checksum;
     }
 
+    /**
+     * Parse this TestDatum into an AbstractDescription in a context of
+     * its own, so that it can be laid out alongside others.
+     * @return the abstract description
+     */
+    public AbstractDescription toAbstractDescription() throws Exception {
+        ObjectMapper m = new ObjectMapper();
+        m.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
+        AbstractDiagram ad = m.readValue(toJSON(), AbstractDiagram.class);
+        return ad.toAbstractDescription(new LayoutContext());
+    }
+
+    /**
+     * Parse a short description, in the form used by TestData, into an
+     * AbstractDescription in a context of its own.
+     * @param description
+     * @return the abstract description
+     */
+    public static AbstractDescription describe(String description) throws Exception {
+        return new TestDatum(description, 0.0).toAbstractDescription();
+    }
+
     /**
      * Return the description of this TestDatum as a JSON string.
      * @return return a string in JSON format.
@@ -0,0 +1,131 @@
+package icircles.concreteDiagram;
+
+import static icircles.concreteDiagram.TestDatum.describe;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import icircles.abstractDescription.AbstractCurve;
+import icircles.abstractDescription.AbstractDescription;
+import icircles.abstractDescription.AbstractSpider;
+import icircles.util.CannotDrawException;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link LayoutCache}.
+ */
+public class TestLayoutCache {
+
+    @Test
+    public void testHitIsRelabelled() throws Exception {
+        LayoutCache cache = new LayoutCache(10);
+        AbstractDescription ad1 = describe("a b ab,a,a 'sa, b 'sb");
+        AbstractDescription ad2 = describe("x y xy,y,y 'sy, x 'sx");
+        ConcreteDiagram cd1 = cache.createDiagram(ad1, 100);
+        ConcreteDiagram cd2 = cache.createDiagram(ad2, 100);
+        assertThat(cache.getMisses(), is(1L));
+        assertThat(cache.getHits(), is(1L));
+        assertThat(cache.size(), is(1));
+
+        Set<AbstractCurve> contours = ad2.getCopyOfContours();
+        for (CircleContour cc : cd2.getCircles()) {
+            assertTrue(contours.contains(cc.ac));
+        }
+        assertThat(cd2.getShadedZones().size(), is(1));
+        ConcreteZone shaded = cd2.getShadedZones().get(0);
+        assertTrue(ad2.hasShadedZone(shaded.getAbstractBasicRegion()));
+        assertThat(shaded.getAbstractBasicRegion().getNumContours(), is(1));
+
+        Set<AbstractSpider> spiders = new HashSet<AbstractSpider>();
+        Iterator<AbstractSpider> sIt = ad2.getSpiderIterator();
+        while (sIt.hasNext()) {
+            spiders.add(sIt.next());
+        }
+        for (ConcreteSpider s : cd2.getSpiders()) {
+            assertTrue(spiders.remove(s.as));
+            ConcreteSpiderFoot foot = s.feet.get(0);
+            assertTrue(foot.getSpider() == s);
+            // the foot is in the caller's zone
+            assertTrue(zoneOf(cd2, s.as).getShape(cd2.getBox()).contains(foot.getX(), foot.getY()));
+        }
+        assertTrue(spiders.isEmpty());
+        // the same shape as the layout first made
+        assertThat(cd2.getCircles().get(0).get_radius() + cd2.getCircles().get(1).get_radius(),
+                closeTo(cd1.getCircles().get(0).get_radius() + cd1.getCircles().get(1).get_radius(), 1e-9));
+    }
+
+    private static ConcreteZone zoneOf(ConcreteDiagram cd, AbstractSpider as) {
+        for (ConcreteZone z : cd.getUnshadedZones()) {
+            if (z.getAbstractBasicRegion() == as.get_feet().first()) {
+                return z;
+            }
+        }
+        for (ConcreteZone z : cd.getShadedZones()) {
+            if (z.getAbstractBasicRegion() == as.get_feet().first()) {
+                return z;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testRescaled() throws Exception {
+        LayoutCache cache = new LayoutCache(10);
+        AbstractDescription ad = describe("a b ab, ,a 'sa, b 'sb");
+        ConcreteDiagram small = cache.createDiagram(ad, 100);
+        ConcreteDiagram big = cache.createDiagram(ad, 200);
+        assertThat(cache.getHits(), is(1L));
+        assertThat(big.getSize(), is(200));
+        for (int i = 0; i < small.getCircles().size(); i++) {
+            CircleContour s = small.getCircles().get(i);
+            CircleContour b = big.getCircles().get(i);
+            assertThat(b.get_cx(), closeTo(2 * s.get_cx(), 1e-9));
+            assertThat(b.get_cy(), closeTo(2 * s.get_cy(), 1e-9));
+            assertThat(b.get_radius(), closeTo(2 * s.get_radius(), 1e-9));
+        }
+        ConcreteSpiderFoot sf = small.getSpiders().get(0).feet.get(0);
+        ConcreteSpiderFoot bf = big.getSpiders().get(0).feet.get(0);
+        assertThat(bf.getX(), closeTo(2 * sf.getX(), 1e-9));
+        assertThat(bf.getY(), closeTo(2 * sf.getY(), 1e-9));
+    }
+
+    @Test
+    public void testFailureIsRemembered() throws Exception {
+        LayoutCache cache = new LayoutCache(10);
+        String undrawable = "qh h fh ih ik kh b ab ac de bd  abc bfg fc bj l lc al m mn nc"
+                + " bc bco bo boj bp bop cq cqb rs ra s";
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.createDiagram(describe(undrawable), 100);
+                fail("expected CannotDrawException");
+            } catch (CannotDrawException x) {
+                // expected
+            }
+        }
+        assertThat(cache.getMisses(), is(1L));
+        assertThat(cache.getHits(), is(1L));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsDropped() throws Exception {
+        LayoutCache cache = new LayoutCache(2);
+        cache.createDiagram(describe("a"), 100);
+        cache.createDiagram(describe("a b"), 100);
+        cache.createDiagram(describe("b"), 100); // a hit, so "a b" is now oldest
+        cache.createDiagram(describe("a ab"), 100);
+        assertThat(cache.size(), is(2));
+        cache.createDiagram(describe("c"), 100);
+        assertThat(cache.getHits(), is(2L));
+        cache.createDiagram(describe("c d"), 100);
+        assertThat(cache.getHits(), is(2L));
+        assertThat(cache.getMisses(), is(4L));
+        cache.clear();
+        assertThat(cache.size(), is(0));
+    }
+}
@@ -0,0 +1,258 @@
+package icircles.concreteDiagram;
+
+import static icircles.concreteDiagram.TestDatum.describe;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import icircles.abstractDescription.AbstractBasicRegion;
+import icircles.abstractDescription.AbstractCurve;
+import icircles.abstractDescription.AbstractDescription;
+import icircles.abstractDescription.CurveLabel;
+import icircles.abstractDescription.LayoutContext;
+import icircles.util.CannotDrawException;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Tests for laying out diagrams in separate {@link LayoutContext}s, and
+ * in batches.
+ */
+public class TestLayoutContext {
+
+    private final int diagramSize = 100;
+
+    @Test
+    public void testContextsAreSeparate() {
+        LayoutContext c1 = new LayoutContext();
+        LayoutContext c2 = new LayoutContext();
+        CurveLabel a1 = CurveLabel.get(c1, "a");
+        CurveLabel a2 = CurveLabel.get(c2, "a");
+        assertFalse(a1 == a2);
+        assertTrue(a1 == CurveLabel.get(c1, "a"));
+
+        AbstractCurve ac1 = new AbstractCurve(c1, a1);
+        AbstractCurve ac2 = new AbstractCurve(c2, a2);
+        // each context counts its own ids, but the curves are different
+        assertTrue(ac1.compareTo(ac2) != 0);
+        assertTrue(ac1.compareTo(ac2) == -ac2.compareTo(ac1));
+        assertFalse(ac1.equals(ac2));
+
+        TreeSet<AbstractCurve> in1 = new TreeSet<AbstractCurve>();
+        in1.add(ac1);
+        TreeSet<AbstractCurve> in2 = new TreeSet<AbstractCurve>();
+        in2.add(ac2);
+        AbstractBasicRegion r1 = AbstractBasicRegion.get(in1);
+        AbstractBasicRegion r2 = AbstractBasicRegion.get(in2);
+        assertTrue(r1.compareTo(r2) != 0);
+        assertFalse(r1.equals(r2));
+        assertFalse(r1.isLabelEquivalent(r2));
+        assertTrue(ac1.clone().getContext() == c1);
+    }
+
+    @Test
+    public void testRegionsInContext() {
+        LayoutContext context = new LayoutContext();
+        AbstractCurve a = new AbstractCurve(context, CurveLabel.get(context, "a"));
+        AbstractCurve b = new AbstractCurve(context, CurveLabel.get(context, "b"));
+        AbstractCurve c = new AbstractCurve(context, CurveLabel.get(context, "c"));
+        TreeSet<AbstractCurve> cs = new TreeSet<AbstractCurve>();
+        AbstractBasicRegion outside = AbstractBasicRegion.get(context, cs);
+        cs.add(b);
+        cs.add(c);
+        AbstractBasicRegion bc = AbstractBasicRegion.get(cs);
+        cs.add(a);
+        AbstractBasicRegion abc = AbstractBasicRegion.get(cs);
+
+        assertTrue(bc.getContext() == context);
+        assertTrue(bc.moved_in(a) == abc);
+        assertTrue(abc.moveOutside(a) == bc);
+        assertTrue(abc.moveOutside(b).moveOutside(c).getStraddledContour(outside) == a);
+        assertTrue(abc.getStraddledContour(bc) == a);
+        assertTrue(abc.moveOutside(b).getStraddledContour(bc) == null);
+        assertFalse(bc.is_in(a));
+        assertTrue(outside.moved_in(c).moved_in(b) == bc);
+
+        assertThat(context.getRegionHits(), is(4L));
+        assertThat(context.getLabelMisses(), is(3L));
+    }
+
+    @Test
+    public void testLibrariesLetGo() throws InterruptedException {
+        LayoutContext context = new LayoutContext();
+        ReferenceQueue<Object> collected = new ReferenceQueue<Object>();
+        List<WeakReference<Object>> made = new ArrayList<WeakReference<Object>>();
+        for (int i = 0; i < 100; i++) {
+            TreeSet<AbstractCurve> cs = new TreeSet<AbstractCurve>();
+            CurveLabel label = CurveLabel.get(context, "c" + i);
+            cs.add(new AbstractCurve(context, label));
+            made.add(new WeakReference<Object>(label, collected));
+            made.add(new WeakReference<Object>(AbstractBasicRegion.get(cs), collected));
+        }
+        assertThat(context.getRegionCount(), is(100));
+
+        // Wait for the collector to clear every label and region.  It is
+        // made to run by allocating, as System.gc may be ignored.
+        long deadline = System.nanoTime() + 60 * 1000000000L;
+        int cleared = 0;
+        while (cleared < made.size()) {
+            if (collected.remove(10) != null) {
+                cleared++;
+                continue;
+            }
+            if (System.nanoTime() - deadline > 0) {
+                fail("only " + cleared + " of " + made.size()
+                        + " labels and regions were collected in 60 seconds");
+            }
+            System.gc();
+            garbage = new byte[1 << 20];
+        }
+        assertThat(context.getRegionCount(), is(0));
+        assertThat(context.getLabelCount(), is(0));
+    }
+
+    // somewhere for testLibrariesLetGo's allocations to go
+    private static volatile byte[] garbage;
+
+    /**
+     * Lay out all the test diagrams at once, each in its own context, and
+     * check they come out as they do one at a time.
+     */
+    @Test
+    public void testConcurrentLayout() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Double>> checksums = new ArrayList<Future<Double>>();
+            for (final TestDatum td : TestData.test_data) {
+                checksums.add(executor.submit(new Callable<Double>() {
+                    public Double call() throws Exception {
+                        return layOut(td);
+                    }
+                }));
+            }
+            for (int i = 0; i < TestData.test_data.length; i++) {
+                double expected = TestData.test_data[i].expected_checksum;
+                double found = checksums.get(i).get().doubleValue();
+                if (expected == 0.0) {
+                    assertThat(found, is(0.0));
+                } else {
+                    assertThat(found, closeTo(expected, 0.00001));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCreateDiagramsAtSizes() throws Exception {
+        List<DiagramRequest> requests = new ArrayList<DiagramRequest>();
+        int[] sizes = { 100, 200, 300 };
+        for (int size : sizes) {
+            requests.add(new DiagramRequest(describe("a b ab c"), size));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<DiagramResult> results = DiagramCreator.createDiagrams(requests, executor);
+            for (int i = 0; i < sizes.length; i++) {
+                DiagramResult r = results.get(i);
+                assertThat(r.getSize(), is(sizes[i]));
+                assertThat(r.getDiagram().getSize(), is(sizes[i]));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCreateDiagrams() throws Exception {
+        List<AbstractDescription> ads = new ArrayList<AbstractDescription>();
+        for (TestDatum td : TestData.test_data) {
+            ads.add(td.toAbstractDescription());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<DiagramResult> results = DiagramCreator.createDiagrams(ads, diagramSize, executor);
+            for (int i = 0; i < TestData.test_data.length; i++) {
+                DiagramResult r = results.get(i);
+                assertThat(r.getIndex(), is(i));
+                assertTrue(r.getDescription() == ads.get(i));
+                double expected = TestData.test_data[i].expected_checksum;
+                if (r.getFailure() != null) {
+                    assertThat(expected, is(0.0));
+                } else {
+                    assertThat(r.getDiagram().checksum(), closeTo(expected, 0.00001));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCreateDiagramsHoldsBack() throws Exception {
+        final int maxInFlight = 3;
+        final int[] read = {0};
+        final int[] done = {0};
+        Iterable<AbstractDescription> ads = new Iterable<AbstractDescription>() {
+            public Iterator<AbstractDescription> iterator() {
+                return new Iterator<AbstractDescription>() {
+                    public boolean hasNext() {
+                        return read[0] < 20;
+                    }
+
+                    public AbstractDescription next() {
+                        // no more than maxInFlight are waiting for results
+                        assertTrue(read[0] - done[0] < maxInFlight);
+                        read[0]++;
+                        try {
+                            return describe("a b ab c");
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            DiagramCreator.createDiagrams(ads, diagramSize, executor, maxInFlight,
+                    new DiagramResult.Listener() {
+                        public void diagramDone(DiagramResult result) {
+                            assertTrue(result.isDrawn());
+                            done[0]++;
+                        }
+                    });
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(done[0], is(20));
+    }
+
+    private double layOut(TestDatum td) throws Exception {
+        DiagramCreator dc = new DiagramCreator(td.toAbstractDescription());
+        try {
+            return dc.createDiagram(diagramSize).checksum();
+        } catch (CannotDrawException cde) {
+            // The expected result of a CannotDrawException is hardcoded as 0.0
+            return 0.0;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package icircles.concreteDiagram;
+
+import static icircles.concreteDiagram.TestDatum.describe;
+import static icircles.concreteDiagram.TestData.FOUR_SET_VENN;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests for improving drawn diagrams with a {@link LayoutRefiner}.
+ */
+public class TestLayoutRefiner {
+
+    private static final String withSpiders = "a b ab c ac, , a 'sa, a ab 'sab, ac 'sc";
+
+    private static void assertSameZones(ConcreteDiagram before, ConcreteDiagram after) {
+        assertThat(after.getCircles().size(), is(before.getCircles().size()));
+        assertThat(after.getShadedZones().size(), is(before.getShadedZones().size()));
+        assertThat(after.getUnshadedZones().size(), is(before.getUnshadedZones().size()));
+        List<ConcreteZone> zones = new ArrayList<ConcreteZone>(after.getShadedZones());
+        zones.addAll(after.getUnshadedZones());
+        for (ConcreteZone z : zones) {
+            assertTrue(z.getGeometry(after.getBox()).getArea() > 0);
+        }
+        for (CircleContour cc : after.getCircles()) {
+            assertTrue(cc.getMinX() >= 0 && cc.getMaxX() <= after.getSize() + 1);
+            assertTrue(cc.getMinY() >= 0 && cc.getMaxY() <= after.getSize() + 1);
+        }
+    }
+
+    @Test
+    public void testRefine() throws Exception {
+        for (String description : new String[] { FOUR_SET_VENN, withSpiders }) {
+            DiagramCreator dc = new DiagramCreator(describe(description));
+            ConcreteDiagram cd = dc.createDiagram(200);
+            double checksum = cd.checksum();
+            LayoutRefiner refiner = new LayoutRefiner(cd, new double[cd.getCircles().size()]);
+            double before = refiner.getQuality();
+            ConcreteDiagram refined = refiner.refine(null, null);
+            assertTrue(refiner.getQuality() >= before);
+            assertTrue(refiner.getQuality() <= 1);
+            assertSameZones(cd, refined);
+            // the diagram refined is left alone
+            assertThat(cd.checksum(), closeTo(checksum, 1e-9));
+
+            refined = new DiagramCreator(describe(description)).createRefinedDiagram(200, 60000);
+            assertSameZones(cd, refined);
+        }
+    }
+
+    @Test
+    public void testAnytime() throws Exception {
+        double expected = new DiagramCreator(describe(FOUR_SET_VENN)).createDiagram(200).checksum();
+        final List<Double> qualities = new ArrayList<Double>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ConcreteDiagram cd;
+        try {
+            cd = new DiagramCreator(describe(FOUR_SET_VENN)).createDiagramAnytime(200, 60000, executor,
+                    new LayoutRefiner.Listener() {
+                        public void diagramImproved(ConcreteDiagram better, double quality) {
+                            qualities.add(quality);
+                        }
+                    });
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+        assertThat(cd.checksum(), closeTo(expected, 1e-9));
+        assertTrue(qualities.size() > 0);
+        for (int i = 1; i < qualities.size(); i++) {
+            assertTrue(qualities.get(i) > qualities.get(i - 1));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package icircles.concreteDiagram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link OccupancyGrid}.
+ */
+public class TestOccupancyGrid {
+
+    /**
+     * Check every cell of a box, one at a time.
+     */
+    private static boolean slowAllOk(OccupancyGrid g, int lowi, int highi, int lowj, int highj) {
+        for (int i = lowi; i <= highi; i++) {
+            for (int j = lowj; j <= highj; j++) {
+                if (i >= g.ni || j >= g.nj || !g.isOk(i, j)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static OccupancyGrid randomGrid(Random r, int ni, int nj) {
+        OccupancyGrid g = new OccupancyGrid(ni, nj);
+        // a blob of ok cells with some holes punched in it
+        double ci = r.nextDouble() * ni;
+        double cj = r.nextDouble() * nj;
+        double rad = r.nextDouble() * Math.max(ni, nj);
+        for (int i = 0; i < ni; i++) {
+            for (int j = 0; j < nj; j++) {
+                double di = i - ci;
+                double dj = j - cj;
+                g.set(i, j, di * di + dj * dj < rad * rad && r.nextInt(30) != 0);
+            }
+        }
+        g.prepare();
+        return g;
+    }
+
+    @Test
+    public void testAllOkMatchesScan() {
+        Random r = new Random(1);
+        for (int n = 0; n < 50; n++) {
+            OccupancyGrid g = randomGrid(r, 1 + r.nextInt(20), 1 + r.nextInt(20));
+            for (int k = 0; k < 100; k++) {
+                int lowi = r.nextInt(g.ni);
+                int lowj = r.nextInt(g.nj);
+                int highi = lowi + r.nextInt(g.ni);
+                int highj = lowj + r.nextInt(g.nj);
+                assertEquals(slowAllOk(g, lowi, highi, lowj, highj),
+                        g.allOk(lowi, highi, lowj, highj));
+            }
+        }
+    }
+
+    @Test
+    public void testFillMatchesContains() {
+        Random r = new Random(3);
+        Rectangle2D.Double box = new Rectangle2D.Double(-300, -300, 600, 600);
+        for (int n = 0; n < 50; n++) {
+            ArrayList<CircleContour> in = new ArrayList<CircleContour>();
+            ArrayList<CircleContour> out = new ArrayList<CircleContour>();
+            for (int k = r.nextInt(3); k >= 0; k--) {
+                in.add(new CircleContour(r.nextInt(100), r.nextInt(100), 50 + r.nextInt(100), null));
+            }
+            for (int k = r.nextInt(4); k >= 0; k--) {
+                out.add(new CircleContour(r.nextInt(200) - 50, r.nextInt(200) - 50, 10 + r.nextInt(60), null));
+            }
+            ZoneGeometry a = new ZoneGeometry(box, in, out);
+            double step = 1 + r.nextInt(10);
+            int ni = 1 + (int) (250 / step);
+            int nj = 1 + (int) (250 / step);
+            OccupancyGrid g = new OccupancyGrid(ni, nj);
+            g.fill(a, -100, -100, step);
+            for (int i = 0; i < ni; i++) {
+                for (int j = 0; j < nj; j++) {
+                    assertEquals(a.contains(-100 + i * step, -100 + j * step), g.isOk(i, j));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFindBoxMatchesScan() {
+        Random r = new Random(2);
+        for (int n = 0; n < 200; n++) {
+            OccupancyGrid g = randomGrid(r, 1 + r.nextInt(25), 1 + r.nextInt(25));
+            int numCircles = 1 + r.nextInt(3);
+
+            // the search which findBox replaces
+            int corneri = -1, cornerj = -1, size = -1;
+            boolean isTall = true;
+            for (int i = 0; i < g.ni; i++) {
+                for (int j = 0; j < g.nj; j++) {
+                    int max_sq = Math.min(g.ni - i, g.nj - j);
+                    for (int sq = size + 1; sq < max_sq + 1; sq++) {
+                        if (slowAllOk(g, i, i + (sq * numCircles) + 1, j, j + sq + 1)) {
+                            isTall = false;
+                        } else if (numCircles > 1
+                                && slowAllOk(g, i, i + sq + 1, j, j + (sq * numCircles) + 1)) {
+                            isTall = true;
+                        } else {
+                            break;
+                        }
+                        corneri = i;
+                        cornerj = j;
+                        size = sq;
+                    }
+                }
+            }
+
+            OccupancyGrid.Box box = g.findBox(numCircles);
+            if (size < 0) {
+                assertNull(box);
+            } else {
+                assertEquals(corneri, box.corneri);
+                assertEquals(cornerj, box.cornerj);
+                assertEquals(size, box.size);
+                assertEquals(isTall, box.isTall);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package icircles.concreteDiagram;
+
+import static icircles.concreteDiagram.TestDatum.describe;
+import static icircles.concreteDiagram.TestData.FOUR_SET_VENN;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import icircles.decomposition.DecompositionStrategy;
+import icircles.recomposition.RecompositionStrategy;
+import icircles.util.CannotDrawException;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+/**
+ * Tests for drawing with chosen strategies, and with all of them at once.
+ */
+public class TestStrategyPortfolio {
+
+    @Test
+    public void testStrategiesAreUsed() throws Exception {
+        double byDefault = new DiagramCreator(describe(FOUR_SET_VENN)).createDiagram(100).checksum();
+        DiagramCreator dc = new DiagramCreator(describe(FOUR_SET_VENN),
+                DecompositionStrategy.getStrategy(DecompositionStrategy.PIERCEDFIRST),
+                RecompositionStrategy.getStrategy(RecompositionStrategy.RECOMPOSE_DOUBLY_PIERCED));
+        assertThat(dc.createDiagram(100).checksum(), closeTo(byDefault, 1e-9));
+
+        // nesting alone can't draw a Venn diagram
+        dc = new DiagramCreator(describe(FOUR_SET_VENN),
+                DecompositionStrategy.getStrategy(DecompositionStrategy.SORT_ORDER),
+                RecompositionStrategy.getStrategy(RecompositionStrategy.RECOMPOSE_NESTED));
+        try {
+            dc.createDiagram(100);
+            fail("expected CannotDrawException");
+        } catch (CannotDrawException x) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testRacing() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ConcreteDiagram cd = DiagramCreator.createDiagramRacing(describe(FOUR_SET_VENN), 100, executor);
+            // some strategies draw a contour as more than one circle
+            assertTrue(cd.getCircles().size() >= 4);
+            for (CircleContour c : cd.getCircles()) {
+                assertTrue("abcd".contains(c.ac.getLabel().getLabel()));
+            }
+
+            String undrawable = "qh h fh ih ik kh b ab ac de bd  abc bfg fc bj l lc al m mn nc"
+                    + " bc bco bo boj bp bop cq cqb rs ra s";
+            try {
+                DiagramCreator.createDiagramRacing(describe(undrawable), 100, executor);
+                fail("expected CannotDrawException");
+            } catch (CannotDrawException x) {
+                // expected
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(DiagramCreator.strategyCombinations().size(), is(12));
+    }
+
+    @Test
+    public void testBacktracking() throws Exception {
+        double byDefault = new DiagramCreator(describe(FOUR_SET_VENN)).createDiagram(100).checksum();
+        DiagramCreator dc = new DiagramCreator(describe(FOUR_SET_VENN));
+        dc.setBacktracking(2);
+        assertThat(dc.createDiagram(100).checksum(), closeTo(byDefault, 1e-9));
+
+        // nesting alone runs out of room here, unless it goes back
+        String nested = "abcd abce de";
+        dc = new DiagramCreator(describe(nested),
+                DecompositionStrategy.getStrategy(DecompositionStrategy.SORT_ORDER),
+                RecompositionStrategy.getStrategy(RecompositionStrategy.RECOMPOSE_NESTED));
+        try {
+            dc.createDiagram(200);
+            fail("expected CannotDrawException");
+        } catch (CannotDrawException x) {
+            // expected
+        }
+        dc = new DiagramCreator(describe(nested),
+                DecompositionStrategy.getStrategy(DecompositionStrategy.SORT_ORDER),
+                RecompositionStrategy.getStrategy(RecompositionStrategy.RECOMPOSE_NESTED));
+        dc.setBacktracking(2);
+        assertThat(dc.createDiagram(200), is(notNullValue()));
+
+        try {
+            dc.setBacktracking(-1);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException x) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testExecutorDrawsTheSame() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (TestDatum td : TestData.test_data) {
+                for (boolean maximal : new boolean[] {false, true}) {
+                    assertThat(td.description,
+                            checksumOf(td, executor, maximal),
+                            closeTo(checksumOf(td, null, maximal), 1e-9));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static double checksumOf(TestDatum td, ExecutorService executor,
+            boolean maximal) throws Exception {
+        DiagramCreator dc = new DiagramCreator(td.toAbstractDescription());
+        dc.setExecutor(executor);
+        dc.setMaximalRadii(maximal);
+        try {
+            return dc.createDiagram(100).checksum();
+        } catch (CannotDrawException x) {
+            return 0.0;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package icircles.concreteDiagram;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Area;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ZoneGeometry}.
+ */
+public class TestZoneGeometry {
+
+    private final Rectangle2D.Double box = new Rectangle2D.Double(-500, -500, 1000, 1000);
+
+    private static ArrayList<CircleContour> circles(CircleContour... cs) {
+        ArrayList<CircleContour> result = new ArrayList<CircleContour>();
+        for (CircleContour c : cs) {
+            result.add(c);
+        }
+        return result;
+    }
+
+    /**
+     * The area enclosed by a flattened Area, by the shoelace formula.
+     */
+    private static double flattenedArea(Area a) {
+        double result = 0.0;
+        double[] coords = new double[6];
+        double startX = 0, startY = 0, lastX = 0, lastY = 0;
+        for (PathIterator it = a.getPathIterator(null, 0.001); !it.isDone(); it.next()) {
+            int type = it.currentSegment(coords);
+            if (type == PathIterator.SEG_MOVETO) {
+                startX = lastX = coords[0];
+                startY = lastY = coords[1];
+            } else if (type == PathIterator.SEG_LINETO) {
+                result += lastX * coords[1] - coords[0] * lastY;
+                lastX = coords[0];
+                lastY = coords[1];
+            } else if (type == PathIterator.SEG_CLOSE) {
+                result += lastX * startY - startX * lastY;
+            }
+        }
+        return Math.abs(0.5 * result);
+    }
+
+    @Test
+    public void testSingleCircle() {
+        CircleContour c = new CircleContour(10, 20, 30, null);
+        ZoneGeometry g = new ZoneGeometry(box, circles(c), circles());
+        double r = 30 + c.nudge;
+        assertThat(g.getArea(), closeTo(Math.PI * r * r, 1e-9));
+        assertTrue(g.contains(10, 20));
+        assertFalse(g.contains(10 + 31, 20));
+        Rectangle2D bounds = g.getBounds2D();
+        assertThat(bounds.getMinX(), closeTo(10 - r, 1e-9));
+        assertThat(bounds.getMaxY(), closeTo(20 + r, 1e-9));
+    }
+
+    @Test
+    public void testOutsideZone() {
+        CircleContour a = new CircleContour(0, 0, 50, null);
+        CircleContour b = new CircleContour(60, 0, 50, null);
+        ZoneGeometry g = new ZoneGeometry(box, circles(), circles(a, b));
+        assertFalse(g.contains(0, 0));
+        assertTrue(g.contains(200, 200));
+        assertThat(g.getBounds2D().getWidth(), closeTo(box.width, 1e-9));
+
+        Area expected = new Area(box);
+        expected.subtract(a.getSmallInterior());
+        expected.subtract(b.getSmallInterior());
+        // Area approximates circles by cubics, so only expect close agreement
+        double approx = flattenedArea(expected);
+        assertThat(g.getArea(), closeTo(approx, approx * 1e-3));
+    }
+
+    @Test
+    public void testVenn3ZonesMatchArea() {
+        CircleContour a = new CircleContour(0, 0, 50, null);
+        CircleContour b = new CircleContour(60, 0, 50, null);
+        CircleContour c = new CircleContour(30, 45, 50, null);
+        CircleContour[][] in = {{a}, {a, b}, {a, b, c}, {c}};
+        CircleContour[][] out = {{b, c}, {c}, {}, {a, b}};
+        double total = 0.0;
+        for (int i = 0; i < in.length; i++) {
+            ConcreteZone cz = new ConcreteZone(null, circles(in[i]), circles(out[i]));
+            ZoneGeometry g = cz.getGeometry(box);
+            assertFalse(g.isEmpty());
+            double approx = flattenedArea(cz.getGeometry(box).makeArea());
+            assertThat(g.getArea(), closeTo(approx, approx * 1e-3));
+            // the drawn shape, built by chaining the arcs, agrees too
+            double drawn = flattenedArea(cz.getShape(box));
+            assertThat(g.getArea(), closeTo(drawn, drawn * 1e-3));
+            total += g.getArea();
+        }
+        assertTrue(total > 0);
+    }
+
+    @Test
+    public void testRefineMatchesRebuild() {
+        CircleContour a = new CircleContour(0, 0, 50, null);
+        CircleContour b = new CircleContour(60, 0, 50, null);
+        CircleContour c = new CircleContour(30, 45, 50, null);
+        CircleContour far = new CircleContour(400, 400, 20, null);
+        ConcreteZone ab = new ConcreteZone(null, circles(a), circles(b));
+        ab.getGeometry(box);
+
+        ConcreteZone refined = ab.refine(c, true);
+        ZoneGeometry expected = new ZoneGeometry(box, circles(a, c), circles(b));
+        assertThat(refined.getGeometry(box).getArea(), closeTo(expected.getArea(), 1e-6));
+        assertThat(refined.getGeometry(box).getBounds2D().getMinY(),
+                closeTo(expected.getBounds2D().getMinY(), 1e-6));
+        assertFalse(refined.getGeometry(box).contains(-40, 0));
+        assertTrue(ab.getGeometry(box).contains(-40, 0));
+
+        refined = ab.refine(c, false);
+        expected = new ZoneGeometry(box, circles(a), circles(b, c));
+        assertThat(refined.getGeometry(box).getArea(), closeTo(expected.getArea(), 1e-6));
+
+        // a circle which misses the zone leaves its geometry alone
+        assertTrue(ab.refine(far, false).getGeometry(box) == ab.getGeometry(box));
+    }
+
+    @Test
+    public void testLargestCircleRadius() {
+        CircleContour a = new CircleContour(0, 0, 50, null);
+        CircleContour b = new CircleContour(60, 0, 50, null);
+        ConcreteZone ab = new ConcreteZone(null, circles(a), circles(b));
+        double rad = ab.largestCircleRadius(box, -20, 0);
+        assertTrue(ab.containsCircle(box, -20, 0, rad - 1e-9));
+        assertFalse(ab.containsCircle(box, -20, 0, rad + 1e-9));
+        assertTrue(ab.largestCircleRadius(box, 30, 0) < 0);
+
+        // the split zones of a piercing of b have a as their common part
+        ConcreteZone aAndB = new ConcreteZone(null, circles(a, b), circles());
+        ConcreteZone union = ConcreteZone.commonPart(Arrays.asList(ab, aAndB));
+        assertTrue(union.getContainingContours().equals(circles(a)));
+        assertTrue(union.getExcludingContours().isEmpty());
+    }
+
+    @Test
+    public void testInscribedCircle() {
+        CircleContour a = new CircleContour(0, 0, 50, null);
+        CircleContour b = new CircleContour(60, 0, 50, null);
+        // the biggest circle in the lens between a and b is centred midway
+        ConcreteZone lens = new ConcreteZone(null, circles(a, b), circles());
+        CircleContour c = InscribedCircle.find(lens, box, 0.01);
+        assertThat(c.cx, closeTo(30, 0.5));
+        assertThat(c.cy, closeTo(0, 0.5));
+        assertThat(c.radius, closeTo(20 + a.nudge, 0.01));
+        assertTrue(lens.containsCircle(box, c.cx, c.cy, c.radius - 1e-9));
+
+        // a ring around b, inside a big circle
+        CircleContour big = new CircleContour(60, 0, 100, null);
+        ConcreteZone ring = new ConcreteZone(null, circles(big), circles(b));
+        c = InscribedCircle.find(ring, box, 0.01);
+        assertThat(c.radius, closeTo(25 + big.nudge, 0.01));
+
+        // nothing fits inside a but outside a bigger circle around it
+        CircleContour around = new CircleContour(0, 0, 80, null);
+        assertTrue(InscribedCircle.find(new ConcreteZone(null, circles(a),
+                circles(around)), box, 0.01) == null);
+    }
+
+    @Test
+    public void testEmptyZone() {
+        CircleContour a = new CircleContour(0, 0, 50, null);
+        CircleContour b = new CircleContour(200, 0, 50, null);
+        ZoneGeometry g = new ZoneGeometry(box, circles(a, b), circles());
+        assertTrue(g.isEmpty());
+        assertFalse(g.contains(100, 0));
+    }
+}
@@ -0,0 +1,54 @@
+package icircles.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link PersistentSortedSet}.
+ */
+public class TestPersistentSortedSet {
+
+    @Test
+    public void testMatchesTreeSet() {
+        Random random = new Random(1);
+        TreeSet<Integer> expected = new TreeSet<Integer>();
+        PersistentSortedSet<Integer> set = PersistentSortedSet.empty();
+        for (int i = 0; i < 2000; i++) {
+            Integer k = Integer.valueOf(random.nextInt(200));
+            if (random.nextBoolean()) {
+                expected.add(k);
+                set = set.with(k);
+            } else {
+                expected.remove(k);
+                set = set.without(k);
+            }
+            assertEquals(expected.size(), set.size());
+        }
+        assertEquals(new ArrayList<Integer>(expected), new ArrayList<Integer>(set));
+        assertEquals(expected.first(), set.first());
+        assertEquals(expected.last(), set.last());
+        for (int k = 0; k < 200; k++) {
+            assertEquals(expected.contains(k), set.contains(k));
+        }
+    }
+
+    @Test
+    public void testOldSetsAreUnchanged() {
+        PersistentSortedSet<Integer> s1 = PersistentSortedSet.of(Arrays.asList(3, 1, 2));
+        PersistentSortedSet<Integer> s2 = s1.with(4).without(1);
+        assertEquals("[1, 2, 3]", s1.toString());
+        assertEquals("[2, 3, 4]", s2.toString());
+        assertTrue(s1.with(2) == s1);
+        assertTrue(s1.without(5) == s1);
+        assertFalse(s2.contains(1));
+        assertTrue(PersistentSortedSet.of(s2) == s2);
+    }
+}